@@ -0,0 +1,92 @@
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import model.ResortSkiers;
+import model.ResortsList;
+import parser.ResortPathParser;
+import parser.SkierPathParser;
+import query.AggregateClient;
+import query.QueryResponder;
+
+/**
+ * GET /resorts: the resorts with rides. GET /resorts/{resortID}/seasons/{seasonID}/day/{dayID}
+ * /skiers: the number of distinct skiers at the resort that day. Both are answered
+ * asynchronously from the consumer's aggregates.
+ */
+@WebServlet(name = "ResortServlet", value = "/ResortServlet", asyncSupported = true)
+public class ResortServlet extends HttpServlet {
+
+  private static final int WAIT_TIME_SECS = 5;
+  private static final String QUERY_URL_PARAM = "queryUrl";
+  private static final String QUERY_TIMEOUT_PARAM = "queryTimeoutMillis";
+  private static final int DEFAULT_QUERY_TIMEOUT_MILLIS = 2000;
+  private AggregateClient aggregates;
+  private ExecutorService queryExecutor;
+
+  @Override
+  public void init() throws ServletException {
+    super.init();
+    queryExecutor = AggregateClient.newExecutor("resort-query");
+    aggregates = new AggregateClient(initParam(QUERY_URL_PARAM, AggregateClient.DEFAULT_URL),
+        Duration.ofMillis(intParam(QUERY_TIMEOUT_PARAM, DEFAULT_QUERY_TIMEOUT_MILLIS)),
+        queryExecutor);
+    aggregates.probe();
+  }
+
+  private String initParam(String name, String defaultValue) {
+    String value = getInitParameter(name);
+    return value == null || value.isEmpty() ? defaultValue : value.trim();
+  }
+
+  private int intParam(String name, int defaultValue) {
+    return Integer.parseInt(initParam(name, String.valueOf(defaultValue)));
+  }
+
+  @Override
+  public void destroy() {
+    super.destroy();
+    if (queryExecutor != null) {
+      queryExecutor.shutdownNow();
+    }
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse res) throws IOException {
+    String path = req.getPathInfo();
+    if (path == null || path.equals("/")) {
+      QueryResponder.respond(req, aggregates.resortIDs().thenApply(ids -> {
+        ResortsList resorts = new ResortsList();
+        for (int id : ids) {
+          resorts.add(resortName(id), id);
+        }
+        return resorts;
+      }), TimeUnit.SECONDS.toMillis(WAIT_TIME_SECS));
+      return;
+    }
+    long parsed = ResortPathParser.parse(path);
+    if (parsed < 0) {
+      res.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      res.getWriter().write("Invalid request: " + SkierPathParser.errorMessage(parsed));
+      return;
+    }
+    int resortID = SkierPathParser.resortId(parsed);
+    QueryResponder.respond(req,
+        aggregates.uniqueSkiers(resortID, SkierPathParser.seasonId(parsed),
+                SkierPathParser.dayId(parsed))
+            .thenApply(count -> new ResortSkiers(resortName(resortID), count)),
+        TimeUnit.SECONDS.toMillis(WAIT_TIME_SECS));
+  }
+
+  /**
+   * Resorts have no names in this system, they are named after their ID
+   */
+  private static String resortName(int resortID) {
+    return "Resort " + resortID;
+  }
+}
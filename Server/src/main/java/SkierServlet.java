@@ -1,36 +1,122 @@
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 import exceptions.InvalidEventException;
-import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import com.google.gson.Gson;
+import model.BulkIngestResult;
 import model.LiftRide;
 import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import model.LiftRideEvent;
+import model.LiftRideEventCodec;
+import model.SkierVertical;
+import model.RidePartitions;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import parser.LiftRideBodyParser;
+import parser.LiftRideValidator;
+import parser.SkierPathParser;
+import publisher.AsyncPublisher;
+import query.AggregateClient;
+import query.QueryResponder;
+import publisher.BatchingPublisher;
+import publisher.DirectPublisher;
+import publisher.EventPublisher;
+import rmqpool.ChannelPool;
+import rmqpool.CommonsChannelPool;
+import rmqpool.ConfirmTracker;
+import rmqpool.ConnectionGroup;
 import rmqpool.RMQChannelFactory;
+import rmqpool.RMQChannelPool;
+import rmqpool.ThreadLocalChannelPool;
 
-@WebServlet(name = "SkierServlet", value = "/SkierServlet", loadOnStartup = 1)
+@WebServlet(name = "SkierServlet", value = "/SkierServlet", loadOnStartup = 1, asyncSupported = true)
 public class SkierServlet extends HttpServlet {
 
-  private static final Gson GSON = new Gson();
   private static final String QUEUE_NAME = "rpc_queue";
 //  private static final String HOST = "172.31.31.xxx";
   private static final String HOST = "localhost";
   private static final int NUM_CHANS = 500;   // Number of channels to add to pools
   private static final int WAIT_TIME_SECS = 5;
-  private GenericObjectPool<Channel> pool;
-  private Connection connection;
+  // init-params read from web.xml, the defaults below apply when a param is absent
+  private static final String ASYNC_MODE_PARAM = "asyncMode";
+  private static final String PUBLISHER_THREADS_PARAM = "publisherThreads";
+  private static final String PUBLISHER_QUEUE_PARAM = "publisherQueueCapacity";
+  private static final int DEFAULT_PUBLISHER_THREADS = 64;
+  private static final int DEFAULT_PUBLISHER_QUEUE_CAPACITY = 10000;
+  private static final String BATCHING_PARAM = "batching";
+  private static final String BATCH_MAX_EVENTS_PARAM = "batchMaxEvents";
+  private static final String BATCH_MAX_DELAY_PARAM = "batchMaxDelayMicros";
+  private static final String BATCH_FLUSHERS_PARAM = "batchFlushers";
+  private static final int DEFAULT_BATCH_MAX_EVENTS = 256;
+  private static final int DEFAULT_BATCH_MAX_DELAY_MICROS = 2000;
+  private static final int DEFAULT_BATCH_FLUSHERS = 4;
+  private static final String CONFIRMS_PARAM = "publisherConfirms";
+  private static final String UNCONFIRMED_WATERMARK_PARAM = "unconfirmedWatermark";
+  private static final int DEFAULT_UNCONFIRMED_WATERMARK = 20000;
+  private static final String WIRE_FORMAT_PARAM = "wireFormat";
+  private static final String CHANNEL_POOL_PARAM = "channelPool";
+  private static final String PARTITIONS_PARAM = "partitions";
+  private static final String CONNECTIONS_PARAM = "connections";
+  private static final String CHANNEL_PLACEMENT_PARAM = "channelPlacement";
+  private static final String CONNECTION_STATS_PARAM = "connectionStatsSecs";
+  private static final String BULK_MAX_RECORDS_PARAM = "bulkMaxRecords";
+  private static final int DEFAULT_BULK_MAX_RECORDS = 10000;
+  private static final String BULK_PATH = "/bulk";
+  private static final String VERTICAL_SUFFIX = "/vertical";
+  // where the consumer's query server listens, GETs are answered from its aggregates
+  private static final String QUERY_URL_PARAM = "queryUrl";
+  private static final String QUERY_TIMEOUT_PARAM = "queryTimeoutMillis";
+  private static final int DEFAULT_QUERY_TIMEOUT_MILLIS = 2000;
+  private static final Gson GSON = new Gson();
+  private ChannelPool pool;
+  // publisher connections, channels are spread over them
+  private ConnectionGroup connections;
+  // logs the per-connection publish rates every connectionStatsSecs, null when that is 0
+  private ScheduledExecutorService statsReporter;
+  private DirectPublisher directPublisher;
+  // publisher stage (async and/or batching), null when POSTs publish directly
+  private EventPublisher stagedPublisher;
+  private boolean asyncMode;
+  // set when publisher confirms are on, bounds the events the broker has not confirmed yet
+  private ConfirmTracker confirmTracker;
+  // skier partitions of the lift_rides exchange, 0 to publish to QUEUE_NAME
+  private int partitions;
+  // bulk POSTs are published in batch messages of bulkChunkSize rides
+  private int bulkChunkSize;
+  private int bulkMaxRecords;
+  private AggregateClient aggregates;
+  private ExecutorService queryExecutor;
 
   @Override
   public void init() throws ServletException {
@@ -41,32 +127,109 @@ public class SkierServlet extends HttpServlet {
     factory.setUsername("admin");
     factory.setPassword("admin");
     try {
-      connection = factory.newConnection();
-      System.out.println("✅ Successfully connected to RabbitMQ as admin!");
+      connections = new ConnectionGroup(factory, intParam(CONNECTIONS_PARAM, 1),
+          ConnectionGroup.Placement.valueOf(
+              initParam(CHANNEL_PLACEMENT_PARAM, "round_robin").toUpperCase()));
+      System.out.println("✅ Successfully connected to RabbitMQ as admin! ("
+          + connections.size() + " connections)");
     } catch (IOException | TimeoutException e) {
       throw new ServletException("Failed to create RabbitMQ connection", e);
     }
+    int statsSecs = intParam(CONNECTION_STATS_PARAM, 0);
+    if (statsSecs > 0) {
+      statsReporter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "rmq-connection-stats");
+        t.setDaemon(true);
+        return t;
+      });
+      statsReporter.scheduleAtFixedRate(
+          () -> System.out.print("Publisher connections:\n" + connections.report()),
+          statsSecs, statsSecs, TimeUnit.SECONDS);
+    }
+    if (Boolean.parseBoolean(initParam(CONFIRMS_PARAM, "false"))) {
+      confirmTracker = new ConfirmTracker(
+          intParam(UNCONFIRMED_WATERMARK_PARAM, DEFAULT_UNCONFIRMED_WATERMARK));
+    }
     //create the pool
     pool = generateChannelPool();
+    partitions = intParam(PARTITIONS_PARAM, 0);
     declareQueue();
+    directPublisher = new DirectPublisher(pool, QUEUE_NAME, confirmTracker,
+        LiftRideEventCodec.Format.valueOf(initParam(WIRE_FORMAT_PARAM, "json").toUpperCase()),
+        partitions);
+    asyncMode = Boolean.parseBoolean(initParam(ASYNC_MODE_PARAM, "false"));
+    bulkChunkSize = intParam(BATCH_MAX_EVENTS_PARAM, DEFAULT_BATCH_MAX_EVENTS);
+    bulkMaxRecords = intParam(BULK_MAX_RECORDS_PARAM, DEFAULT_BULK_MAX_RECORDS);
+    if (Boolean.parseBoolean(initParam(BATCHING_PARAM, "false"))) {
+      stagedPublisher = new BatchingPublisher(directPublisher,
+          intParam(BATCH_MAX_EVENTS_PARAM, DEFAULT_BATCH_MAX_EVENTS),
+          intParam(BATCH_MAX_DELAY_PARAM, DEFAULT_BATCH_MAX_DELAY_MICROS), TimeUnit.MICROSECONDS,
+          intParam(BATCH_FLUSHERS_PARAM, DEFAULT_BATCH_FLUSHERS),
+          intParam(PUBLISHER_QUEUE_PARAM, DEFAULT_PUBLISHER_QUEUE_CAPACITY));
+    } else if (asyncMode) {
+      stagedPublisher = new AsyncPublisher(directPublisher,
+          intParam(PUBLISHER_THREADS_PARAM, DEFAULT_PUBLISHER_THREADS),
+          intParam(PUBLISHER_QUEUE_PARAM, DEFAULT_PUBLISHER_QUEUE_CAPACITY));
+    }
+    queryExecutor = AggregateClient.newExecutor("skier-query");
+    aggregates = new AggregateClient(initParam(QUERY_URL_PARAM, AggregateClient.DEFAULT_URL),
+        Duration.ofMillis(intParam(QUERY_TIMEOUT_PARAM, DEFAULT_QUERY_TIMEOUT_MILLIS)),
+        queryExecutor);
+    aggregates.probe();
+    System.out.println("SkierServlet running in " + (asyncMode ? "async" : "sync") + " mode, "
+        + (stagedPublisher instanceof BatchingPublisher ? "batching" : "unbatched") + " publishing"
+        + (confirmTracker != null ? " with publisher confirms" : "")
+        + ", wire format " + directPublisher.getFormat()
+        + (partitions > 0 ? ", " + partitions + " skier partitions" : "")
+        + ", channel pool " + pool.getClass().getSimpleName());
+  }
+
+  /**
+   * Read a servlet init-param, or fall back to the given default
+   */
+  private String initParam(String name, String defaultValue) {
+    String value = getInitParameter(name);
+    return value == null || value.isEmpty() ? defaultValue : value.trim();
+  }
+
+  private int intParam(String name, int defaultValue) {
+    return Integer.parseInt(initParam(name, String.valueOf(defaultValue)));
   }
 
   /**
-   * Declare queue only one time
+   * Declare queue only one time, or the exchange and every partition queue when partitioned
    */
   private void declareQueue() {
-    try (Channel initChannel = connection.createChannel()) {
-      initChannel.queueDeclare(QUEUE_NAME, false, false, false, null);
+    try (Channel initChannel = connections.get(0).createChannel()) {
+      if (partitions > 0) {
+        RidePartitions.declare(initChannel, partitions,
+            IntStream.range(0, partitions).boxed().collect(Collectors.toList()));
+      } else {
+        initChannel.queueDeclare(QUEUE_NAME, false, false, false, null);
+      }
     } catch (Exception e) {
       System.err.println("Failed to declare queue during initialization: " + e.getMessage());
     }
   }
 
   /**
-   * Create Channel Pool
-   * @return
+   * Create the Channel Pool selected by the channelPool init-param:
+   * rmq (the lock-free RMQChannelPool, the default), commons (GenericObjectPool) or
+   * threadlocal (one channel per publishing thread)
    */
-  private GenericObjectPool<Channel> generateChannelPool() {
+  private ChannelPool generateChannelPool() {
+    // The channel facory generates new channels on demand, as needed by the pool
+    RMQChannelFactory chanFactory = new RMQChannelFactory (connections, confirmTracker);
+    String strategy = initParam(CHANNEL_POOL_PARAM, "rmq");
+    if ("threadlocal".equalsIgnoreCase(strategy)) {
+      return new ThreadLocalChannelPool(chanFactory);
+    }
+    if ("rmq".equalsIgnoreCase(strategy)) {
+      return new RMQChannelPool(NUM_CHANS, chanFactory, Duration.ofSeconds(WAIT_TIME_SECS));
+    }
+    if (!"commons".equalsIgnoreCase(strategy)) {
+      throw new IllegalArgumentException("Unknown channelPool " + strategy);
+    }
     // Config the Channel Pool
     GenericObjectPoolConfig<Channel> config = new GenericObjectPoolConfig<>();
     config.setMaxTotal(NUM_CHANS);
@@ -74,15 +237,17 @@ public class SkierServlet extends HttpServlet {
     // config.setMinIdle(NUM_CHANS);
     config.setBlockWhenExhausted(true); // clients will block when pool is exhausted, for a maximum duration of WAIT_TIME_SECS
     config.setMaxWait(Duration.ofSeconds(WAIT_TIME_SECS));  // tune WAIT_TIME_SECS to meet your workload/demand
-    // The channel facory generates new channels on demand, as needed by the GenericObjectPool
-    RMQChannelFactory chanFactory = new RMQChannelFactory (connection);
-    return  new GenericObjectPool<Channel>(chanFactory, config);
+    return new CommonsChannelPool(new GenericObjectPool<Channel>(chanFactory, config));
   }
 
   @Override
   protected void doPost(HttpServletRequest req, HttpServletResponse res)
       throws IOException {
 //    res.setContentType("text/plain");
+    if (BULK_PATH.equals(req.getPathInfo())) {
+      doBulkPost(req, res);
+      return;
+    }
     LiftRideEvent liftRideEvent;
     // Validate the request
     try {
@@ -93,42 +258,288 @@ public class SkierServlet extends HttpServlet {
       res.getWriter().write("Invalid event: " + e.getMessage());
       return;
     }
-    // Send to the Rabbit MQ
-    Channel channel = null;
+    // shed load rather than pile up events the broker has not confirmed
+    if (confirmTracker != null && confirmTracker.isSaturated()) {
+      res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      res.getWriter().write("Too many unconfirmed events, retry later");
+      return;
+    }
+    if (stagedPublisher == null) {
+      // Send to the Rabbit MQ
+      try {
+        // with confirms on the confirm is tracked in the background, this thread does not wait
+        directPublisher.send(liftRideEvent);
+        res.setStatus(HttpServletResponse.SC_CREATED);
+//      res.getWriter().write("Event published successfully!");
+      } catch (Exception e) {
+        System.err.println("Error publishing to RabbitMQ: " + e.getMessage());
+        res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        res.getWriter().write("Failed to publish to RabbitMQ");
+      }
+      return;
+    }
+    CompletableFuture<Void> published = stagedPublisher.publish(liftRideEvent);
+    if (asyncMode) {
+      completeWhenPublished(req, published);
+      return;
+    }
+    // sync mode with batching: hold this thread until the batch carrying the event is out
     try {
-      channel = pool.borrowObject();
-      channel.basicPublish("", QUEUE_NAME, null, GSON.toJson(liftRideEvent).getBytes(StandardCharsets.UTF_8));
+      published.get(WAIT_TIME_SECS, TimeUnit.SECONDS);
       res.setStatus(HttpServletResponse.SC_CREATED);
-//      res.getWriter().write("Event published successfully!");
-    } catch (Exception e) {
-      System.err.println("Error publishing to RabbitMQ: " + e.getMessage());
+    } catch (TimeoutException e) {
+      res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      res.getWriter().write("Timed out publishing to RabbitMQ");
+    } catch (ExecutionException e) {
+      writePublishFailure(res, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+  }
+
+  /**
+   * POST /skiers/bulk, a JSON array or newline-delimited JSON of fully-qualified rides:
+   * {"resortID":1,"seasonID":"2025","dayID":"1","skierID":7,"body":{"time":5,"liftID":3}}
+   * Each record is validated with the single-ride rules, valid ones are published as batch
+   * messages of up to batchMaxEvents rides while the body is still being read, and the
+   * response is a BulkIngestResult listing every rejected record by its index.
+   * 201 when records were accepted, 404 when none were valid, 503/500 when a publish failed.
+   */
+  private void doBulkPost(HttpServletRequest req, HttpServletResponse res) throws IOException {
+    if (confirmTracker != null && confirmTracker.isSaturated()) {
+      res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      res.getWriter().write("Too many unconfirmed events, retry later");
+      return;
+    }
+    BulkIngestResult result = new BulkIngestResult();
+    List<BulkChunk> chunks = new ArrayList<>();
+    BulkChunk chunk = new BulkChunk(bulkChunkSize);
+    int index = 0;
+    try (JsonReader reader = new JsonReader(
+        new InputStreamReader(req.getInputStream(), StandardCharsets.UTF_8))) {
+      // lenient so that several top-level values (NDJSON) can be read from one stream
+      reader.setStrictness(Strictness.LENIENT);
+      boolean array = reader.peek() == JsonToken.BEGIN_ARRAY;
+      if (array) {
+        reader.beginArray();
+      }
+      while (array ? reader.hasNext() : reader.peek() != JsonToken.END_DOCUMENT) {
+        if (index == bulkMaxRecords) {
+          result.addReceived();
+          result.reject(index, "Too many records, at most " + bulkMaxRecords + " per request");
+          break;
+        }
+        result.addReceived();
+        LiftRideEvent event;
+        try {
+          event = GSON.fromJson(reader, LiftRideEvent.class);
+        } catch (JsonParseException e) {
+          // the reader is somewhere inside the bad record, the rest of the body cannot be trusted
+          result.reject(index, "Malformed record, rest of the body ignored");
+          break;
+        }
+        try {
+          LiftRideValidator.validateEvent(event);
+        } catch (InvalidEventException e) {
+          result.reject(index++, e.getMessage());
+          continue;
+        }
+        // same canonical IDs as the single-ride path
+        event.setSeasonID(LiftRideEventCodec.idString(Integer.parseInt(event.getSeasonID())));
+        event.setDayID(LiftRideEventCodec.idString(Integer.parseInt(event.getDayID())));
+        chunk.add(index++, event);
+        if (chunk.size() == bulkChunkSize) {
+          chunks.add(chunk.publish(directPublisher));
+          chunk = new BulkChunk(bulkChunkSize);
+        }
+      }
+    } catch (MalformedJsonException | EOFException | IllegalStateException e) {
+      result.addReceived();
+      result.reject(index, "Malformed JSON body, rest of the body ignored");
+    }
+    if (chunk.size() > 0) {
+      chunks.add(chunk.publish(directPublisher));
+    }
+
+    // 404 (the invalid input status of the single-ride POST) unless some ride gets published
+    int status = HttpServletResponse.SC_NOT_FOUND;
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(WAIT_TIME_SECS);
+    for (BulkChunk published : chunks) {
+      String failure = null;
+      try {
+        published.future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        result.addAccepted(published.size());
+        if (status == HttpServletResponse.SC_NOT_FOUND) {
+          status = HttpServletResponse.SC_CREATED;
+        }
+        continue;
+      } catch (TimeoutException e) {
+        failure = "Timed out publishing to RabbitMQ";
+        status = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RejectedExecutionException) {
+          failure = "Publisher is saturated, retry later";
+          status = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+        } else {
+          System.err.println("Error publishing to RabbitMQ: " + cause.getMessage());
+          failure = "Failed to publish to RabbitMQ";
+          if (status != HttpServletResponse.SC_SERVICE_UNAVAILABLE) {
+            status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        failure = "Interrupted publishing to RabbitMQ";
+        status = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+      }
+      for (int i = 0; i < published.size(); i++) {
+        result.reject(published.indices[i], failure);
+      }
+    }
+    res.setStatus(status);
+    res.setContentType("application/json");
+    res.setCharacterEncoding("UTF-8");
+    GSON.toJson(result, res.getWriter());
+  }
+
+  /**
+   * Valid rides of a bulk request published together, with their positions in the body
+   */
+  private static class BulkChunk {
+
+    private final List<LiftRideEvent> events;
+    private final int[] indices;
+    private CompletableFuture<Void> future;
+
+    private BulkChunk(int capacity) {
+      this.events = new ArrayList<>(capacity);
+      this.indices = new int[capacity];
+    }
+
+    private void add(int index, LiftRideEvent event) {
+      indices[events.size()] = index;
+      events.add(event);
+    }
+
+    private int size() {
+      return events.size();
+    }
+
+    private BulkChunk publish(DirectPublisher publisher) {
+      try {
+        future = publisher.sendBatch(events);
+      } catch (Exception e) {
+        future = CompletableFuture.failedFuture(e);
+      }
+      return this;
+    }
+  }
+
+  /**
+   * 503 when the publisher stage shed the event, 500 when the publish itself failed
+   */
+  private void writePublishFailure(HttpServletResponse res, Throwable cause) throws IOException {
+    if (cause instanceof RejectedExecutionException) {
+      res.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      res.getWriter().write("Publisher is saturated, retry later");
+    } else {
+      System.err.println("Error publishing to RabbitMQ: " + cause.getMessage());
       res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
       res.getWriter().write("Failed to publish to RabbitMQ");
-    } finally {
-      // 4) Return the channel to the pool (if it was successfully borrowed)
-      if (channel != null) {
-        try {
-          pool.returnObject(channel);
-        } catch (Exception e) {
-          // Log an error if returning object to pool fails
-          System.err.println("Error returning channel to pool: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Release the container thread and let the publisher stage finish the request.
+   * The response is completed with 201 once the event is published, 503 if the stage is
+   * saturated or the publish does not finish within WAIT_TIME_SECS.
+   */
+  private void completeWhenPublished(HttpServletRequest req, CompletableFuture<Void> published) {
+    AsyncContext asyncContext = req.startAsync();
+    asyncContext.setTimeout(WAIT_TIME_SECS * 1000L);
+    // the publish callback and the container timeout race to complete the request
+    AtomicBoolean done = new AtomicBoolean(false);
+    asyncContext.addListener(new AsyncListener() {
+      @Override
+      public void onTimeout(AsyncEvent event) {
+        completeAsync(asyncContext, done, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+            "Timed out publishing to RabbitMQ");
+      }
+
+      @Override
+      public void onError(AsyncEvent event) {
+        completeAsync(asyncContext, done, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, null);
+      }
+
+      @Override
+      public void onComplete(AsyncEvent event) {
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) {
+      }
+    });
+    published.whenComplete((ignored, e) -> {
+      if (!done.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        HttpServletResponse res = (HttpServletResponse) asyncContext.getResponse();
+        if (e == null) {
+          res.setStatus(HttpServletResponse.SC_CREATED);
+        } else {
+          writePublishFailure(res, e instanceof CompletionException ? e.getCause() : e);
         }
+      } catch (IOException | IllegalStateException ex) {
+        System.err.println("Error writing async response: " + ex.getMessage());
+      } finally {
+        asyncContext.complete();
       }
+    });
+  }
+
+  private void completeAsync(AsyncContext asyncContext, AtomicBoolean done, int status,
+      String message) {
+    if (!done.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      HttpServletResponse res = (HttpServletResponse) asyncContext.getResponse();
+      res.setStatus(status);
+      if (message != null) {
+        res.getWriter().write(message);
+      }
+    } catch (IOException | IllegalStateException e) {
+      System.err.println("Error writing async response: " + e.getMessage());
+    } finally {
+      asyncContext.complete();
     }
   }
 
   @Override
   public void destroy() {
     super.destroy();
+    if (statsReporter != null) {
+      statsReporter.shutdownNow();
+    }
+    if (queryExecutor != null) {
+      queryExecutor.shutdownNow();
+    }
+    if (stagedPublisher != null) {
+      stagedPublisher.close();  // drain queued events before the channels go away
+    }
+    if (confirmTracker != null) {
+      System.out.println("Publisher confirms: " + confirmTracker);
+    }
     if (pool != null) {
-      pool.close();  // This closes all idle channels in the pool
+      System.out.println("Channel pool: " + pool);
+      pool.close();
     }
-    if (connection != null && connection.isOpen()) {
-      try {
-        connection.close();
-      } catch (IOException e) {
-        System.err.println("Error closing RabbitMQ connection: " + e.getMessage());
-      }
+    if (connections != null) {
+      System.out.print("Publisher connections:\n" + connections.report());
+      connections.close();
     }
   }
 
@@ -143,104 +554,100 @@ public class SkierServlet extends HttpServlet {
     if (urlPath == null || urlPath.isEmpty()) {
       throw new InvalidEventException("Missing or empty URL");
     }
-      String[] parts = urlPath.split("/");
       // Expected: /{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}
-      // parts = ["", "1", "seasons", "2025", "days", "1", "skiers", "123"]
-      if (parts.length != 8 ||
-          !"seasons".equals(parts[2]) ||
-          !"days".equals(parts[4]) ||
-          !"skiers".equals(parts[6])) {
-        throw new InvalidEventException("URL path format is incorrect");
-      }
-
-      // Parse numeric fields
-      int resortId, seasonId, dayId, skierId;
-      try {
-        resortId = Integer.parseInt(parts[1]);
-        seasonId = Integer.parseInt(parts[3]);
-        dayId = Integer.parseInt(parts[5]);
-        skierId = Integer.parseInt(parts[7]);
-      } catch (NumberFormatException e) {
-        throw new InvalidEventException("One of the URL path fields is not a valid integer");
-      }
-
-      // Basic constraints
-      if (resortId < 1 || resortId > 10) {
-        throw new InvalidEventException("resortId out of range");
-      }
-      if (seasonId != 2025) {
-        throw new InvalidEventException("seasonId must be 2025");
-      }
-      if (dayId < 1 || dayId > 366) {
-        throw new InvalidEventException("dayId out of range");
-      }
-      if (skierId < 1 || skierId > 100000) {
-        throw new InvalidEventException("skierId out of range");
+      long path = SkierPathParser.parse(urlPath);
+      if (path < 0) {
+        throw new InvalidEventException(SkierPathParser.errorMessage(path));
       }
 
       // 2) Parse JSON body into LiftRide
       LiftRide liftRide = parseLiftRideBody(req);
-      if (liftRide == null) {
-        throw new InvalidEventException("Invalid or missing JSON body");
-      }
 
       // 3) If everything is valid, create and return a LiftRideEvent
-      return new LiftRideEvent(liftRide, resortId, String.valueOf(seasonId),
-          String.valueOf(dayId), skierId);
+      return new LiftRideEvent(liftRide, SkierPathParser.resortId(path),
+          LiftRideEventCodec.idString(SkierPathParser.seasonId(path)),
+          LiftRideEventCodec.idString(SkierPathParser.dayId(path)), SkierPathParser.skierId(path));
     }
 
 
     /**
-     * Reads the JSON from the request and attempts to parse a LiftRide object.
-     * Returns null if parsing fails.
+     * Streams the JSON body from the request and validates the LiftRide it holds.
      */
-    private LiftRide parseLiftRideBody(HttpServletRequest req) {
-      try (BufferedReader reader = req.getReader()) {
-        StringBuilder sb = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-          sb.append(line);
-        }
-        LiftRide liftRide = GSON.fromJson(sb.toString(), LiftRide.class);
-        // Validate numeric constraints for the LiftRide
-        if (liftRide.getTime() == null || liftRide.getTime() < 1 || liftRide.getTime() > 360) {
-          throw new InvalidEventException("time must be between 1 and 360");
-        }
-        if (liftRide.getLiftID() == null || liftRide.getLiftID() < 1 || liftRide.getLiftID() > 40) {
-          throw new InvalidEventException("liftID must be between 1 and 40");
-        }
-        return liftRide;
-      } catch (IOException | JsonSyntaxException |InvalidEventException e) {
-        return null;
+    private LiftRide parseLiftRideBody(HttpServletRequest req)
+        throws IOException, InvalidEventException {
+      LiftRide liftRide;
+      try (InputStream in = req.getInputStream()) {
+        liftRide = LiftRideBodyParser.parse(in, req.getContentLengthLong());
       }
+      // Validate numeric constraints for the LiftRide
+      LiftRideValidator.validateLiftRide(liftRide);
+      return liftRide;
     }
 
-//  @Override
-//  protected void doGet(HttpServletRequest req, HttpServletResponse res)
-//      throws ServletException, IOException {
-//    res.setContentType("text/plain");
-//    String urlPath = req.getPathInfo();
-//
-//    // check we have a URL!
-//    if (urlPath == null || urlPath.isEmpty()) {
-//      res.setStatus(HttpServletResponse.SC_NOT_FOUND);
-//      res.getWriter().write("missing parameters");
-//      return;
-//    }
-//
-//    String[] urlParts = urlPath.split("/");
-//    // and now validate url path and return the response status code
-//    // (and maybe also some value if input is valid)
-//
-//    if (isUrlValid(urlPath)) {
-//      res.setStatus(HttpServletResponse.SC_OK);
-//      // do any sophisticated processing with urlParts which contains all the url params
-//      // TODO: process url params in `urlParts`
-//      res.getWriter().write("It works!");
-//    } else {
-//      res.setStatus(HttpServletResponse.SC_NOT_FOUND);
-//    }
-//  }
-//
-
-}
\ No newline at end of file
+  /**
+   * GET /skiers/{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}: the skier's
+   * vertical that day, a JSON number. GET /skiers/{skierID}/vertical?resort=..[&season=..]:
+   * the skier's vertical per season over the given resorts. Both are answered asynchronously
+   * from the consumer's aggregates.
+   */
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse res) throws IOException {
+    String path = req.getPathInfo() == null ? "" : req.getPathInfo();
+    if (path.endsWith(VERTICAL_SUFFIX) || path.endsWith(VERTICAL_SUFFIX + "/")) {
+      doGetVertical(req, res, path);
+      return;
+    }
+    long parsed = SkierPathParser.parse(path);
+    if (parsed < 0) {
+      res.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      res.getWriter().write("Invalid request: " + SkierPathParser.errorMessage(parsed));
+      return;
+    }
+    QueryResponder.respond(req, aggregates.dayVertical(SkierPathParser.skierId(parsed),
+            SkierPathParser.resortId(parsed), SkierPathParser.seasonId(parsed),
+            SkierPathParser.dayId(parsed)),
+        TimeUnit.SECONDS.toMillis(WAIT_TIME_SECS));
+  }
+
+  private void doGetVertical(HttpServletRequest req, HttpServletResponse res, String path)
+      throws IOException {
+    long skierID = SkierPathParser.parseVertical(path);
+    if (skierID < 0) {
+      res.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      res.getWriter().write("Invalid request: " + SkierPathParser.errorMessage(skierID));
+      return;
+    }
+    List<Integer> resorts;
+    List<Integer> seasons;
+    try {
+      resorts = intValues(req.getParameterValues("resort"));
+      seasons = intValues(req.getParameterValues("season"));
+    } catch (NumberFormatException e) {
+      res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      res.getWriter().write("Invalid request: resort and season must be integers");
+      return;
+    }
+    if (resorts.isEmpty()) {
+      res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      res.getWriter().write("Invalid request: missing resort");
+      return;
+    }
+    QueryResponder.respond(req,
+        aggregates.seasonVerticals((int) skierID, resorts, seasons).thenApply(totals -> {
+          SkierVertical vertical = new SkierVertical();
+          totals.forEach((season, total) -> vertical.add(String.valueOf(season), total));
+          return vertical;
+        }),
+        TimeUnit.SECONDS.toMillis(WAIT_TIME_SECS));
+  }
+
+  private static List<Integer> intValues(String[] values) {
+    List<Integer> result = new ArrayList<>();
+    if (values != null) {
+      for (String value : values) {
+        result.add(Integer.parseInt(value.trim()));
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,18 @@
+package exceptions;
+
+/**
+ * The consumer's query server answered a read with an error status
+ */
+public class AggregateQueryException extends RuntimeException {
+
+  private final int status;
+
+  public AggregateQueryException(int status, String message) {
+    super("Query server answered " + status + ": " + message);
+    this.status = status;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+}
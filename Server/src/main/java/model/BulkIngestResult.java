@@ -0,0 +1,65 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response of the bulk lift ride endpoint: how many records were received, accepted
+ * (validated and published) and rejected, with the reason for every rejected record.
+ */
+public class BulkIngestResult {
+
+  private int received;
+  private int accepted;
+  private int rejected;
+  private final List<RecordError> errors = new ArrayList<>();
+
+  public void addReceived() {
+    received++;
+  }
+
+  public void addAccepted(int count) {
+    accepted += count;
+  }
+
+  public void reject(int index, String message) {
+    rejected++;
+    errors.add(new RecordError(index, message));
+  }
+
+  public int getReceived() {
+    return received;
+  }
+
+  public int getAccepted() {
+    return accepted;
+  }
+
+  public int getRejected() {
+    return rejected;
+  }
+
+  public List<RecordError> getErrors() {
+    return errors;
+  }
+
+  public static class RecordError {
+
+    // position of the record in the request body, starting at 0
+    private final int index;
+    private final String message;
+
+    public RecordError(int index, String message) {
+      this.index = index;
+      this.message = message;
+    }
+
+    public int getIndex() {
+      return index;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package model;
+
+import com.google.gson.Gson;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Wire formats for LiftRideEvent messages on the queue.
+ * The AMQP content-type selects the format: JSON (also assumed when no content-type is set)
+ * or a fixed-width binary record of RECORD_SIZE bytes:
+ *
+ *   resortID u16 | seasonID u16 | dayID u16 | time u16 | skierID i32 | liftID u16 | reserved u16
+ *
+ * A message whose AMQP type is BATCH_TYPE carries several events: a JSON array, or the
+ * binary records back to back.
+ * NOTE: keep in sync with the consumer's copy of this class.
+ */
+public final class LiftRideEventCodec {
+
+  public static final String JSON_CONTENT_TYPE = "application/json";
+  public static final String BINARY_CONTENT_TYPE = "application/x-lift-ride";
+  public static final String BATCH_TYPE = "lift-ride-batch";
+  public static final int RECORD_SIZE = 16;
+
+  private static final Gson GSON = new Gson();
+  private static final int MAX_U16 = 0xFFFF;
+  // season and day IDs are small numbers, decode them to shared Strings
+  private static final String[] ID_STRINGS = new String[4096];
+
+  public enum Format {
+    JSON(JSON_CONTENT_TYPE),
+    BINARY(BINARY_CONTENT_TYPE);
+
+    private final String contentType;
+
+    Format(String contentType) {
+      this.contentType = contentType;
+    }
+
+    public String contentType() {
+      return contentType;
+    }
+
+    public byte[] encode(LiftRideEvent event) {
+      if (this == JSON) {
+        return GSON.toJson(event).getBytes(StandardCharsets.UTF_8);
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+      writeRecord(event, buffer);
+      return buffer.array();
+    }
+
+    public byte[] encodeBatch(List<LiftRideEvent> events) {
+      if (this == JSON) {
+        return GSON.toJson(events).getBytes(StandardCharsets.UTF_8);
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * events.size());
+      for (LiftRideEvent event : events) {
+        writeRecord(event, buffer);
+      }
+      return buffer.array();
+    }
+  }
+
+  private LiftRideEventCodec() {
+  }
+
+  /**
+   * Decode a message body.
+   *
+   * @param contentType the AMQP content-type, null for legacy JSON messages
+   * @param batch whether the AMQP type is BATCH_TYPE
+   * @throws IllegalArgumentException for an unknown content-type or a truncated binary body
+   */
+  public static List<LiftRideEvent> decode(String contentType, boolean batch, byte[] body) {
+    if (contentType == null || JSON_CONTENT_TYPE.equals(contentType)) {
+      String json = new String(body, StandardCharsets.UTF_8);
+      return batch ? Arrays.asList(GSON.fromJson(json, LiftRideEvent[].class))
+          : Collections.singletonList(GSON.fromJson(json, LiftRideEvent.class));
+    }
+    if (!BINARY_CONTENT_TYPE.equals(contentType)) {
+      throw new IllegalArgumentException("Unsupported content-type " + contentType);
+    }
+    if (body.length % RECORD_SIZE != 0 || (!batch && body.length != RECORD_SIZE)) {
+      throw new IllegalArgumentException("Malformed binary lift ride body of " + body.length + " bytes");
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(body);
+    List<LiftRideEvent> events = new ArrayList<>(body.length / RECORD_SIZE);
+    while (buffer.hasRemaining()) {
+      events.add(readRecord(buffer));
+    }
+    return events;
+  }
+
+  /**
+   * Write one binary record at the buffer's position
+   */
+  public static void writeRecord(LiftRideEvent event, ByteBuffer buffer) {
+    buffer.putShort(u16(event.getResortID(), "resortID"))
+        .putShort(u16(Integer.parseInt(event.getSeasonID()), "seasonID"))
+        .putShort(u16(Integer.parseInt(event.getDayID()), "dayID"))
+        .putShort(u16(event.getBody().getTime(), "time"))
+        .putInt(event.getSkierID())
+        .putShort(u16(event.getBody().getLiftID(), "liftID"))
+        .putShort((short) 0);
+  }
+
+  /**
+   * Read one binary record from the buffer's position
+   */
+  public static LiftRideEvent readRecord(ByteBuffer buffer) {
+    int resortID = buffer.getShort() & MAX_U16;
+    int seasonID = buffer.getShort() & MAX_U16;
+    int dayID = buffer.getShort() & MAX_U16;
+    int time = buffer.getShort() & MAX_U16;
+    int skierID = buffer.getInt();
+    int liftID = buffer.getShort() & MAX_U16;
+    buffer.getShort(); // reserved
+    return new LiftRideEvent(new LiftRide().time(time).liftID(liftID), resortID,
+        idString(seasonID), idString(dayID), skierID);
+  }
+
+  private static short u16(int value, String field) {
+    if (value < 0 || value > MAX_U16) {
+      throw new IllegalArgumentException(field + " does not fit the binary format: " + value);
+    }
+    return (short) value;
+  }
+
+  /**
+   * String form of a season or day ID, shared for the small IDs the API uses
+   */
+  public static String idString(int id) {
+    if (id < 0 || id >= ID_STRINGS.length) {
+      return String.valueOf(id);
+    }
+    // racy but benign, Strings are immutable
+    String s = ID_STRINGS[id];
+    if (s == null) {
+      s = String.valueOf(id);
+      ID_STRINGS[id] = s;
+    }
+    return s;
+  }
+}
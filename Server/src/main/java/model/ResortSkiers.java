@@ -0,0 +1,24 @@
+package model;
+
+/**
+ * Response of GET /resorts/{resortID}/seasons/{seasonID}/day/{dayID}/skiers
+ */
+public class ResortSkiers {
+
+  // the resort's name, as in the API's ResortSkiers model
+  private final String time;
+  private final int numSkiers;
+
+  public ResortSkiers(String time, int numSkiers) {
+    this.time = time;
+    this.numSkiers = numSkiers;
+  }
+
+  public String getTime() {
+    return time;
+  }
+
+  public int getNumSkiers() {
+    return numSkiers;
+  }
+}
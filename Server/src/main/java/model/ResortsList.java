@@ -0,0 +1,39 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response of GET /resorts
+ */
+public class ResortsList {
+
+  private final List<Resort> resorts = new ArrayList<>();
+
+  public void add(String resortName, int resortID) {
+    resorts.add(new Resort(resortName, resortID));
+  }
+
+  public List<Resort> getResorts() {
+    return resorts;
+  }
+
+  public static class Resort {
+
+    private final String resortName;
+    private final int resortID;
+
+    public Resort(String resortName, int resortID) {
+      this.resortName = resortName;
+      this.resortID = resortID;
+    }
+
+    public String getResortName() {
+      return resortName;
+    }
+
+    public int getResortID() {
+      return resortID;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response of GET /skiers/{skierID}/vertical: the skier's total vertical per season
+ */
+public class SkierVertical {
+
+  private final List<SeasonVertical> resorts = new ArrayList<>();
+
+  public void add(String seasonID, long totalVert) {
+    resorts.add(new SeasonVertical(seasonID, totalVert));
+  }
+
+  public List<SeasonVertical> getResorts() {
+    return resorts;
+  }
+
+  public static class SeasonVertical {
+
+    private final String seasonID;
+    private final long totalVert;
+
+    public SeasonVertical(String seasonID, long totalVert) {
+      this.seasonID = seasonID;
+      this.totalVert = totalVert;
+    }
+
+    public String getSeasonID() {
+      return seasonID;
+    }
+
+    public long getTotalVert() {
+      return totalVert;
+    }
+  }
+}
@@ -0,0 +1,250 @@
+package parser;
+
+import exceptions.InvalidEventException;
+import java.io.IOException;
+import java.io.InputStream;
+import model.LiftRide;
+
+/**
+ * Streaming parser for the POST body {"time":..,"liftID":..}.
+ *
+ * Reads the request InputStream in bulk into a per-thread byte buffer and scans the JSON
+ * bytes there: the two integers are accumulated as they are read, property names are matched
+ * byte by byte, and other members (e.g. "waitTime") are skipped, so no intermediate String or
+ * tree is built. Bodies larger than MAX_BODY_BYTES are rejected, up front when the
+ * Content-Length announces it.
+ */
+public final class LiftRideBodyParser {
+
+  public static final int MAX_BODY_BYTES = 1024;
+  private static final int EOF = -1;
+  private static final byte[] TIME = {'t', 'i', 'm', 'e'};
+  private static final byte[] LIFT_ID = {'l', 'i', 'f', 't', 'I', 'D'};
+  private static final int UNKNOWN_KEY = 0;
+  private static final int TIME_KEY = 1;
+  private static final int LIFT_ID_KEY = 2;
+  private static final long NULL_VALUE = Long.MIN_VALUE;
+  // container threads are pooled, so each keeps one body buffer for its lifetime
+  private static final ThreadLocal<byte[]> BUFFERS =
+      ThreadLocal.withInitial(() -> new byte[MAX_BODY_BYTES + 1]);
+
+  private final byte[] buf;
+  private final int limit;
+  private int pos;
+
+  private LiftRideBodyParser(byte[] buf, int limit) {
+    this.buf = buf;
+    this.limit = limit;
+  }
+
+  /**
+   * Parse a LiftRide body. Missing or null fields are left null for the caller to validate.
+   *
+   * @param contentLength the request Content-Length, -1 when unknown (chunked)
+   * @throws InvalidEventException if the body is too large or not a JSON object of the
+   *     expected shape
+   */
+  public static LiftRide parse(InputStream in, long contentLength)
+      throws IOException, InvalidEventException {
+    if (contentLength > MAX_BODY_BYTES) {
+      throw new InvalidEventException("JSON body larger than " + MAX_BODY_BYTES + " bytes");
+    }
+    byte[] buf = BUFFERS.get();
+    int length = 0;
+    int n;
+    while ((n = in.read(buf, length, buf.length - length)) > 0) {
+      length += n;
+      if (length > MAX_BODY_BYTES) {
+        throw new InvalidEventException("JSON body larger than " + MAX_BODY_BYTES + " bytes");
+      }
+    }
+    return new LiftRideBodyParser(buf, length).parseObject();
+  }
+
+  private LiftRide parseObject() throws InvalidEventException {
+    LiftRide liftRide = new LiftRide();
+    expect(nextNonWhitespace(), '{');
+    int c = nextNonWhitespace();
+    if (c != '}') {
+      while (true) {
+        expect(c, '"');
+        int key = readKey();
+        expect(nextNonWhitespace(), ':');
+        if (key == UNKNOWN_KEY) {
+          skipValue();
+        } else {
+          long value = readInt();
+          Integer field = value == NULL_VALUE ? null : (int) value;
+          if (key == TIME_KEY) {
+            liftRide.setTime(field);
+          } else {
+            liftRide.setLiftID(field);
+          }
+        }
+        c = nextNonWhitespace();
+        if (c == '}') {
+          break;
+        }
+        expect(c, ',');
+        c = nextNonWhitespace();
+      }
+    }
+    if (nextNonWhitespace() != EOF) {
+      throw new InvalidEventException("Unexpected content after JSON body");
+    }
+    return liftRide;
+  }
+
+  /**
+   * Read a property name (the opening quote is consumed) and tell which field it is
+   */
+  private int readKey() throws InvalidEventException {
+    boolean time = true;
+    boolean liftId = true;
+    int length = 0;
+    int c;
+    while ((c = next()) != '"') {
+      if (c == EOF) {
+        throw new InvalidEventException("Unterminated string in JSON body");
+      }
+      if (c == '\\') {
+        next();  // escaped names never match our fields
+        time = liftId = false;
+      }
+      time &= length < TIME.length && c == TIME[length];
+      liftId &= length < LIFT_ID.length && c == LIFT_ID[length];
+      length++;
+    }
+    if (time && length == TIME.length) {
+      return TIME_KEY;
+    }
+    if (liftId && length == LIFT_ID.length) {
+      return LIFT_ID_KEY;
+    }
+    return UNKNOWN_KEY;
+  }
+
+  /**
+   * Read an int value (or null) with the same bounds as Integer
+   */
+  private long readInt() throws InvalidEventException {
+    int c = nextNonWhitespace();
+    if (c == 'n') {
+      expectLiteral("ull");
+      return NULL_VALUE;
+    }
+    boolean negative = c == '-';
+    if (negative) {
+      c = next();
+    }
+    if (c < '0' || c > '9') {
+      throw new InvalidEventException("Expected an integer in JSON body");
+    }
+    long value = 0;
+    while (c >= '0' && c <= '9') {
+      value = value * 10 + (c - '0');
+      if (value > Integer.MAX_VALUE + 1L) {
+        throw new InvalidEventException("Integer out of range in JSON body");
+      }
+      c = next();
+    }
+    if (c == '.' || c == 'e' || c == 'E') {
+      throw new InvalidEventException("Expected an integer in JSON body");
+    }
+    unread(c);
+    value = negative ? -value : value;
+    if (value > Integer.MAX_VALUE) {
+      throw new InvalidEventException("Integer out of range in JSON body");
+    }
+    return value;
+  }
+
+  /**
+   * Skip the value of a member we do not care about
+   */
+  private void skipValue() throws InvalidEventException {
+    int c = nextNonWhitespace();
+    if (c == '"') {
+      skipString();
+    } else if (c == '{' || c == '[') {
+      skipNested();
+    } else if (isDelimiter(c)) {
+      throw new InvalidEventException("Malformed JSON body, missing value");
+    } else {
+      // number or literal, runs until the next delimiter
+      while (!isDelimiter(c) && !isWhitespace(c)) {
+        c = next();
+      }
+      unread(c);
+    }
+  }
+
+  /**
+   * Skip a nested object or array, its opening bracket already consumed
+   */
+  private void skipNested() throws InvalidEventException {
+    int depth = 1;
+    while (depth > 0) {
+      int c = next();
+      if (c == EOF) {
+        throw new InvalidEventException("Unexpected end of JSON body");
+      } else if (c == '"') {
+        skipString();
+      } else if (c == '{' || c == '[') {
+        depth++;
+      } else if (c == '}' || c == ']') {
+        depth--;
+      }
+    }
+  }
+
+  private void skipString() throws InvalidEventException {
+    int c;
+    while ((c = next()) != '"') {
+      if (c == EOF) {
+        throw new InvalidEventException("Unterminated string in JSON body");
+      }
+      if (c == '\\') {
+        next();
+      }
+    }
+  }
+
+  private void expectLiteral(String rest) throws InvalidEventException {
+    for (int i = 0; i < rest.length(); i++) {
+      expect(next(), rest.charAt(i));
+    }
+  }
+
+  private void expect(int c, char expected) throws InvalidEventException {
+    if (c != expected) {
+      throw new InvalidEventException("Malformed JSON body, expected '" + expected + "'");
+    }
+  }
+
+  private int nextNonWhitespace() throws InvalidEventException {
+    int c;
+    do {
+      c = next();
+    } while (isWhitespace(c));
+    return c;
+  }
+
+  private static boolean isDelimiter(int c) {
+    return c == EOF || c == ',' || c == ':' || c == '}' || c == ']';
+  }
+
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+  }
+
+  private int next() {
+    return pos < limit ? buf[pos++] & 0xFF : EOF;
+  }
+
+  private void unread(int c) {
+    if (c != EOF) {
+      pos--;
+    }
+  }
+}
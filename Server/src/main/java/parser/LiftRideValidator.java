@@ -0,0 +1,71 @@
+package parser;
+
+import exceptions.InvalidEventException;
+import model.LiftRide;
+import model.LiftRideEvent;
+
+/**
+ * Validation rules for lift rides, shared by the single-ride POST and the bulk endpoint.
+ * ID ranges and messages are the ones SkierPathParser applies to the URL.
+ */
+public final class LiftRideValidator {
+
+  public static final int MIN_TIME = 1;
+  public static final int MAX_TIME = 360;
+  public static final int MIN_LIFT_ID = 1;
+  public static final int MAX_LIFT_ID = 40;
+
+  private LiftRideValidator() {
+  }
+
+  /**
+   * Validate numeric constraints for the LiftRide
+   */
+  public static void validateLiftRide(LiftRide liftRide) throws InvalidEventException {
+    if (liftRide == null) {
+      throw new InvalidEventException("Invalid or missing JSON body");
+    }
+    if (liftRide.getTime() == null || liftRide.getTime() < MIN_TIME || liftRide.getTime() > MAX_TIME) {
+      throw new InvalidEventException("time must be between " + MIN_TIME + " and " + MAX_TIME);
+    }
+    if (liftRide.getLiftID() == null || liftRide.getLiftID() < MIN_LIFT_ID
+        || liftRide.getLiftID() > MAX_LIFT_ID) {
+      throw new InvalidEventException("liftID must be between " + MIN_LIFT_ID + " and " + MAX_LIFT_ID);
+    }
+  }
+
+  /**
+   * Validate a fully-qualified ride record, as posted to the bulk endpoint
+   */
+  public static void validateEvent(LiftRideEvent event) throws InvalidEventException {
+    if (event == null) {
+      throw new InvalidEventException("Missing lift ride record");
+    }
+    int seasonId;
+    int dayId;
+    try {
+      seasonId = Integer.parseInt(String.valueOf(event.getSeasonID()));
+      dayId = Integer.parseInt(String.valueOf(event.getDayID()));
+    } catch (NumberFormatException e) {
+      throw new InvalidEventException(SkierPathParser.errorMessage(SkierPathParser.NUMBER_ERROR));
+    }
+    if (event.getResortID() == null || event.getSkierID() == null) {
+      throw new InvalidEventException(SkierPathParser.errorMessage(SkierPathParser.NUMBER_ERROR));
+    }
+    if (event.getResortID() < SkierPathParser.MIN_RESORT_ID
+        || event.getResortID() > SkierPathParser.MAX_RESORT_ID) {
+      throw new InvalidEventException(SkierPathParser.errorMessage(SkierPathParser.RESORT_RANGE_ERROR));
+    }
+    if (seasonId != SkierPathParser.SEASON_ID) {
+      throw new InvalidEventException(SkierPathParser.errorMessage(SkierPathParser.SEASON_ERROR));
+    }
+    if (dayId < SkierPathParser.MIN_DAY_ID || dayId > SkierPathParser.MAX_DAY_ID) {
+      throw new InvalidEventException(SkierPathParser.errorMessage(SkierPathParser.DAY_RANGE_ERROR));
+    }
+    if (event.getSkierID() < SkierPathParser.MIN_SKIER_ID
+        || event.getSkierID() > SkierPathParser.MAX_SKIER_ID) {
+      throw new InvalidEventException(SkierPathParser.errorMessage(SkierPathParser.SKIER_RANGE_ERROR));
+    }
+    validateLiftRide(event.getBody());
+  }
+}
@@ -0,0 +1,66 @@
+package parser;
+
+/**
+ * Single pass, allocation free parser for the resort day route:
+ * /{resortID}/seasons/{seasonID}/day/{dayID}/skiers
+ *
+ * Same approach, ranges and error codes as SkierPathParser: a valid path is returned packed
+ * into a long (read it back with SkierPathParser's resortId/seasonId/dayId accessors), an
+ * invalid one as a negative code for SkierPathParser.errorMessage().
+ */
+public final class ResortPathParser {
+
+  private static final String SEASONS = "seasons";
+  private static final String DAY = "day";
+  private static final String SKIERS = "skiers";
+
+  private ResortPathParser() {
+  }
+
+  public static long parse(String path) {
+    int len = path.length();
+    while (len > 1 && path.charAt(len - 1) == '/') {
+      len--;
+    }
+    if (len == 0 || path.charAt(0) != '/') {
+      return SkierPathParser.FORMAT_ERROR;
+    }
+    boolean numberError = false;
+    int pos = 1;
+
+    long resort = SkierPathParser.parseInt(path, pos, len);
+    pos = SkierPathParser.nextSlash(path, pos, len);
+    numberError |= resort == Long.MIN_VALUE;
+    pos = SkierPathParser.literal(path, pos, len, SEASONS);
+    if (pos < 0) {
+      return SkierPathParser.FORMAT_ERROR;
+    }
+    long season = SkierPathParser.parseInt(path, pos, len);
+    pos = SkierPathParser.nextSlash(path, pos, len);
+    numberError |= season == Long.MIN_VALUE;
+    pos = SkierPathParser.literal(path, pos, len, DAY);
+    if (pos < 0) {
+      return SkierPathParser.FORMAT_ERROR;
+    }
+    long day = SkierPathParser.parseInt(path, pos, len);
+    pos = SkierPathParser.nextSlash(path, pos, len);
+    numberError |= day == Long.MIN_VALUE;
+    if (!SkierPathParser.lastLiteral(path, pos, len, SKIERS)) {
+      return SkierPathParser.FORMAT_ERROR;
+    }
+
+    if (numberError) {
+      return SkierPathParser.NUMBER_ERROR;
+    }
+    if (resort < SkierPathParser.MIN_RESORT_ID || resort > SkierPathParser.MAX_RESORT_ID) {
+      return SkierPathParser.RESORT_RANGE_ERROR;
+    }
+    if (season != SkierPathParser.SEASON_ID) {
+      return SkierPathParser.SEASON_ERROR;
+    }
+    if (day < SkierPathParser.MIN_DAY_ID || day > SkierPathParser.MAX_DAY_ID) {
+      return SkierPathParser.DAY_RANGE_ERROR;
+    }
+    return SkierPathParser.pack(resort, season, day, 0);
+  }
+}
@@ -0,0 +1,233 @@
+package parser;
+
+/**
+ * Single pass, allocation free parser for the skier routes:
+ * /{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID} (POST and GET), and
+ * /{skierID}/vertical (GET, see parseVertical).
+ *
+ * parse() walks the path characters once, checks the literals in place and accumulates the
+ * four IDs as ints. A valid path is returned packed into a long (read it back with the
+ * resortId/seasonId/dayId/skierId accessors); an invalid one is returned as a negative error
+ * code, turned into a message by errorMessage(). Validation rules and the order in which
+ * they are reported are the same as the original split("/") based parser, with one
+ * intentional difference: IDs must be ASCII digits. Integer.parseInt also accepted other
+ * Unicode decimal digits (e.g. Arabic-Indic U+0663 for 3), which are now a NUMBER_ERROR.
+ */
+public final class SkierPathParser {
+
+  public static final long FORMAT_ERROR = -1;
+  public static final long NUMBER_ERROR = -2;
+  public static final long RESORT_RANGE_ERROR = -3;
+  public static final long SEASON_ERROR = -4;
+  public static final long DAY_RANGE_ERROR = -5;
+  public static final long SKIER_RANGE_ERROR = -6;
+
+  public static final int MIN_RESORT_ID = 1;
+  public static final int MAX_RESORT_ID = 10;
+  public static final int SEASON_ID = 2025;
+  public static final int MIN_DAY_ID = 1;
+  public static final int MAX_DAY_ID = 366;
+  public static final int MIN_SKIER_ID = 1;
+  public static final int MAX_SKIER_ID = 100000;
+
+  private static final String SEASONS = "seasons";
+  private static final String DAYS = "days";
+  private static final String SKIERS = "skiers";
+  private static final String VERTICAL = "vertical";
+
+  // packed layout: skier bits 0-23, day bits 24-35, season bits 36-51, resort bits 52-62
+  private static final int DAY_SHIFT = 24;
+  private static final int SEASON_SHIFT = 36;
+  private static final int RESORT_SHIFT = 52;
+  private static final long SKIER_MASK = 0xFFFFFFL;
+  private static final long DAY_MASK = 0xFFFL;
+  private static final long SEASON_MASK = 0xFFFFL;
+  private static final long RESORT_MASK = 0x7FFL;
+
+  private SkierPathParser() {
+  }
+
+  /**
+   * Parse and validate a path, see the class comment for the result encoding.
+   */
+  public static long parse(String path) {
+    int len = path.length();
+    // like split("/"), trailing slashes are ignored
+    while (len > 1 && path.charAt(len - 1) == '/') {
+      len--;
+    }
+    if (len == 0 || path.charAt(0) != '/') {
+      return FORMAT_ERROR;
+    }
+    boolean numberError = false;
+    int pos = 1;
+
+    long resort = parseInt(path, pos, len);
+    pos = nextSlash(path, pos, len);
+    numberError |= resort == Long.MIN_VALUE;
+    pos = literal(path, pos, len, SEASONS);
+    if (pos < 0) {
+      return FORMAT_ERROR;
+    }
+    long season = parseInt(path, pos, len);
+    pos = nextSlash(path, pos, len);
+    numberError |= season == Long.MIN_VALUE;
+    pos = literal(path, pos, len, DAYS);
+    if (pos < 0) {
+      return FORMAT_ERROR;
+    }
+    long day = parseInt(path, pos, len);
+    pos = nextSlash(path, pos, len);
+    numberError |= day == Long.MIN_VALUE;
+    pos = literal(path, pos, len, SKIERS);
+    if (pos < 0) {
+      return FORMAT_ERROR;
+    }
+    long skier = parseInt(path, pos, len);
+    if (nextSlash(path, pos, len) != len) {
+      return FORMAT_ERROR;  // more than eight segments
+    }
+    numberError |= skier == Long.MIN_VALUE;
+
+    if (numberError) {
+      return NUMBER_ERROR;
+    }
+    if (resort < MIN_RESORT_ID || resort > MAX_RESORT_ID) {
+      return RESORT_RANGE_ERROR;
+    }
+    if (season != SEASON_ID) {
+      return SEASON_ERROR;
+    }
+    if (day < MIN_DAY_ID || day > MAX_DAY_ID) {
+      return DAY_RANGE_ERROR;
+    }
+    if (skier < MIN_SKIER_ID || skier > MAX_SKIER_ID) {
+      return SKIER_RANGE_ERROR;
+    }
+    return pack(resort, season, day, skier);
+  }
+
+  /**
+   * Parse and validate /{skierID}/vertical
+   *
+   * @return the skierID, or a negative error code for errorMessage()
+   */
+  public static long parseVertical(String path) {
+    int len = path.length();
+    while (len > 1 && path.charAt(len - 1) == '/') {
+      len--;
+    }
+    if (len == 0 || path.charAt(0) != '/') {
+      return FORMAT_ERROR;
+    }
+    long skier = parseInt(path, 1, len);
+    int pos = nextSlash(path, 1, len);
+    if (!lastLiteral(path, pos, len, VERTICAL)) {
+      return FORMAT_ERROR;
+    }
+    if (skier == Long.MIN_VALUE) {
+      return NUMBER_ERROR;
+    }
+    if (skier < MIN_SKIER_ID || skier > MAX_SKIER_ID) {
+      return SKIER_RANGE_ERROR;
+    }
+    return skier;
+  }
+
+  static long pack(long resort, long season, long day, long skier) {
+    return resort << RESORT_SHIFT | season << SEASON_SHIFT | day << DAY_SHIFT | skier;
+  }
+
+  public static int resortId(long parsed) {
+    return (int) (parsed >>> RESORT_SHIFT & RESORT_MASK);
+  }
+
+  public static int seasonId(long parsed) {
+    return (int) (parsed >>> SEASON_SHIFT & SEASON_MASK);
+  }
+
+  public static int dayId(long parsed) {
+    return (int) (parsed >>> DAY_SHIFT & DAY_MASK);
+  }
+
+  public static int skierId(long parsed) {
+    return (int) (parsed & SKIER_MASK);
+  }
+
+  public static String errorMessage(long error) {
+    if (error == FORMAT_ERROR) {
+      return "URL path format is incorrect";
+    } else if (error == NUMBER_ERROR) {
+      return "One of the URL path fields is not a valid integer";
+    } else if (error == RESORT_RANGE_ERROR) {
+      return "resortId out of range";
+    } else if (error == SEASON_ERROR) {
+      return "seasonId must be " + SEASON_ID;
+    } else if (error == DAY_RANGE_ERROR) {
+      return "dayId out of range";
+    } else if (error == SKIER_RANGE_ERROR) {
+      return "skierId out of range";
+    }
+    return "URL path is valid";
+  }
+
+  /**
+   * Parse the segment starting at pos with Integer.parseInt semantics (optional sign, at
+   * least one digit, no overflow), except that only ASCII digits are accepted. Returns
+   * Long.MIN_VALUE if it is not a valid int.
+   */
+  static long parseInt(String path, int pos, int len) {
+    boolean negative = false;
+    if (pos < len && (path.charAt(pos) == '-' || path.charAt(pos) == '+')) {
+      negative = path.charAt(pos) == '-';
+      pos++;
+    }
+    long value = 0;
+    int digits = 0;
+    for (; pos < len && path.charAt(pos) != '/'; pos++, digits++) {
+      char c = path.charAt(pos);
+      if (c < '0' || c > '9') {
+        return Long.MIN_VALUE;
+      }
+      value = value * 10 + (c - '0');
+      if (value > Integer.MAX_VALUE + 1L) {
+        return Long.MIN_VALUE;
+      }
+    }
+    if (digits == 0) {
+      return Long.MIN_VALUE;
+    }
+    value = negative ? -value : value;
+    return value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+  }
+
+  /**
+   * Position of the '/' ending the segment that starts at pos, or len
+   */
+  static int nextSlash(String path, int pos, int len) {
+    while (pos < len && path.charAt(pos) != '/') {
+      pos++;
+    }
+    return pos;
+  }
+
+  /**
+   * Expect "/literal/" at pos (pos is on the slash), return the position after it or -1
+   */
+  static int literal(String path, int pos, int len, String literal) {
+    int end = pos + 1 + literal.length();
+    if (end >= len || path.charAt(pos) != '/' || path.charAt(end) != '/'
+        || !path.regionMatches(pos + 1, literal, 0, literal.length())) {
+      return -1;
+    }
+    return end + 1;
+  }
+
+  /**
+   * Expect "/literal" at pos (pos is on the slash) ending the path
+   */
+  static boolean lastLiteral(String path, int pos, int len, String literal) {
+    return pos + 1 + literal.length() == len && path.charAt(pos) == '/'
+        && path.regionMatches(pos + 1, literal, 0, literal.length());
+  }
+}
@@ -0,0 +1,79 @@
+package publisher;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.LiftRideEvent;
+
+/**
+ * A dedicated publisher stage: events are queued and published by a small, fixed set of
+ * publisher threads, so the caller (a Tomcat worker) never waits on the pool or the broker.
+ * When the stage queue is full the returned future fails with a RejectedExecutionException.
+ */
+public class AsyncPublisher implements EventPublisher {
+
+  private static final int SHUTDOWN_WAIT_SECS = 5;
+  private final DirectPublisher delegate;
+  private final ThreadPoolExecutor executor;
+
+  public AsyncPublisher(DirectPublisher delegate, int numThreads, int queueCapacity) {
+    this.delegate = delegate;
+    AtomicInteger threadCount = new AtomicInteger(0);
+    this.executor = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), r -> {
+          Thread thread = new Thread(r, "rmq-publisher-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    this.executor.prestartAllCoreThreads();
+  }
+
+  @Override
+  public CompletableFuture<Void> publish(LiftRideEvent event) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        try {
+          // don't hold the publisher thread for the confirm, chain it instead
+          delegate.send(event).whenComplete((ignored, e) -> {
+            if (e == null) {
+              future.complete(null);
+            } else {
+              future.completeExceptionally(e);
+            }
+          });
+        } catch (Exception e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // stage is saturated, let the caller shed the request
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Number of events waiting for a publisher thread
+   */
+  public int getBacklog() {
+    return executor.getQueue().size();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_WAIT_SECS, TimeUnit.SECONDS)) {
+        System.err.println("Publisher stage did not drain, dropping " + getBacklog() + " events");
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
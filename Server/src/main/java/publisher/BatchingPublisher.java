@@ -0,0 +1,189 @@
+package publisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import model.LiftRideEvent;
+
+/**
+ * Coalesces events from concurrent requests into batched AMQP messages.
+ * A batch is flushed as soon as it holds maxBatchSize events, or maxDelay after its first
+ * event arrived, whichever comes first. Each batch goes out as a single batch message through
+ * DirectPublisher.sendBatch, so the consumer can unpack it.
+ */
+public class BatchingPublisher implements EventPublisher {
+
+  private static final int SHUTDOWN_WAIT_SECS = 5;
+
+  private final DirectPublisher delegate;
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+  // events accepted but not flushed yet are capped, beyond that publish() sheds load
+  private final int maxPending;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private List<PendingEvent> pending;
+  private long firstPendingNanos;
+  private volatile boolean closed;
+  private final List<Thread> flushers = new ArrayList<>();
+
+  public BatchingPublisher(DirectPublisher delegate, int maxBatchSize, long maxDelay,
+      TimeUnit unit, int numFlushers, int maxPending) {
+    this.delegate = delegate;
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelayNanos = unit.toNanos(maxDelay);
+    this.maxPending = maxPending;
+    this.pending = new ArrayList<>(maxBatchSize);
+    for (int i = 0; i < numFlushers; i++) {
+      Thread flusher = new Thread(this::flushLoop, "rmq-batch-flusher-" + i);
+      flusher.setDaemon(true);
+      flusher.start();
+      flushers.add(flusher);
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> publish(LiftRideEvent event) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    lock.lock();
+    try {
+      if (closed || pending.size() >= maxPending) {
+        future.completeExceptionally(new RejectedExecutionException("Batch publisher is saturated"));
+        return future;
+      }
+      if (pending.isEmpty()) {
+        firstPendingNanos = System.nanoTime();
+      }
+      pending.add(new PendingEvent(event, future));
+      // wake a flusher on the first event (to start the delay clock) and on a full batch
+      if (pending.size() == 1 || pending.size() == maxBatchSize) {
+        notEmpty.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+    return future;
+  }
+
+  private void flushLoop() {
+    while (true) {
+      List<PendingEvent> batch;
+      try {
+        batch = nextBatch();
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (batch == null) {
+        return;
+      }
+      flush(batch);
+    }
+  }
+
+  /**
+   * Wait for a full batch or for the oldest pending event to reach maxDelay.
+   * Returns null once the publisher is closed and nothing is left to flush.
+   */
+  private List<PendingEvent> nextBatch() throws InterruptedException {
+    lock.lock();
+    try {
+      while (true) {
+        if (pending.isEmpty()) {
+          if (closed) {
+            return null;
+          }
+          notEmpty.await();
+          continue;
+        }
+        long waitNanos = maxDelayNanos - (System.nanoTime() - firstPendingNanos);
+        if (pending.size() >= maxBatchSize || waitNanos <= 0 || closed) {
+          return takeBatch();
+        }
+        notEmpty.awaitNanos(waitNanos);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // called with the lock held
+  private List<PendingEvent> takeBatch() {
+    List<PendingEvent> batch;
+    if (pending.size() <= maxBatchSize) {
+      batch = pending;
+      pending = new ArrayList<>(maxBatchSize);
+    } else {
+      batch = new ArrayList<>(pending.subList(0, maxBatchSize));
+      pending = new ArrayList<>(pending.subList(maxBatchSize, pending.size()));
+    }
+    if (!pending.isEmpty()) {
+      // the leftovers already waited, flush them on the next pass without extra delay
+      firstPendingNanos = System.nanoTime() - maxDelayNanos;
+      notEmpty.signal();
+    }
+    return batch;
+  }
+
+  private void flush(List<PendingEvent> batch) {
+    List<LiftRideEvent> events = new ArrayList<>(batch.size());
+    for (PendingEvent p : batch) {
+      events.add(p.event);
+    }
+    CompletableFuture<Void> published;
+    try {
+      published = delegate.sendBatch(events);
+    } catch (Exception e) {
+      published = CompletableFuture.failedFuture(e);
+    }
+    published.whenComplete((ignored, e) -> {
+      if (e != null) {
+        System.err.println("Error publishing batch to RabbitMQ: " + e.getMessage());
+      }
+      for (PendingEvent p : batch) {
+        if (e == null) {
+          p.future.complete(null);
+        } else {
+          p.future.completeExceptionally(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Flush whatever is pending and stop the flusher threads
+   */
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    for (Thread flusher : flushers) {
+      try {
+        flusher.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_WAIT_SECS));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private static class PendingEvent {
+
+    private final LiftRideEvent event;
+    private final CompletableFuture<Void> future;
+
+    private PendingEvent(LiftRideEvent event, CompletableFuture<Void> future) {
+      this.event = event;
+      this.future = future;
+    }
+  }
+}
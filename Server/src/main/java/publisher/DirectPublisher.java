@@ -0,0 +1,165 @@
+package publisher;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import model.LiftRideEvent;
+import model.LiftRideEventCodec;
+import model.RidePartitions;
+import rmqpool.ChannelPool;
+import rmqpool.ConfirmTracker;
+
+/**
+ * Publishes on the calling thread, using a channel borrowed from the pool.
+ * With a ConfirmTracker the pool's channels are in confirm mode and the futures returned
+ * here complete on the broker's confirm, without the caller waiting for it.
+ * With partitions > 0 rides go to the RidePartitions exchange, routed by skierID, instead of
+ * straight to queueName.
+ */
+public class DirectPublisher implements EventPublisher {
+
+  private final ChannelPool pool;
+  private final String queueName;
+  // 0 when everything goes to queueName
+  private final int partitions;
+  private final String[] routingKeys;
+  private final ConfirmTracker confirmTracker;
+  private final LiftRideEventCodec.Format format;
+  private final AMQP.BasicProperties props;
+  private final AMQP.BasicProperties batchProps;
+
+  public DirectPublisher(ChannelPool pool, String queueName) {
+    this(pool, queueName, null, LiftRideEventCodec.Format.JSON);
+  }
+
+  public DirectPublisher(ChannelPool pool, String queueName,
+      ConfirmTracker confirmTracker, LiftRideEventCodec.Format format) {
+    this(pool, queueName, confirmTracker, format, 0);
+  }
+
+  public DirectPublisher(ChannelPool pool, String queueName,
+      ConfirmTracker confirmTracker, LiftRideEventCodec.Format format, int partitions) {
+    this.pool = pool;
+    this.queueName = queueName;
+    this.partitions = partitions;
+    this.routingKeys = new String[partitions];
+    for (int i = 0; i < partitions; i++) {
+      routingKeys[i] = RidePartitions.routingKey(i);
+    }
+    this.confirmTracker = confirmTracker;
+    this.format = format;
+    this.props = new AMQP.BasicProperties.Builder().contentType(format.contentType()).build();
+    this.batchProps = new AMQP.BasicProperties.Builder()
+        .type(LiftRideEventCodec.BATCH_TYPE)
+        .contentType(format.contentType())
+        .build();
+  }
+
+  /**
+   * Wire format of the messages, the content-type header tells the consumer which one it is
+   */
+  public LiftRideEventCodec.Format getFormat() {
+    return format;
+  }
+
+  /**
+   * Borrow a channel, publish the event and give the channel back.
+   * Blocks the caller for as long as the pool and the broker take to accept the publish.
+   *
+   * @return a future completed by the broker confirm, already complete if confirms are off
+   */
+  public CompletableFuture<Void> send(LiftRideEvent event) throws Exception {
+    if (partitions == 0) {
+      return send("", queueName, props, format.encode(event), 1);
+    }
+    return send(RidePartitions.EXCHANGE_NAME, routingKeyOf(event), props, format.encode(event), 1);
+  }
+
+  /**
+   * Publish the events as one batch message, or one per partition the events fall into
+   */
+  public CompletableFuture<Void> sendBatch(List<LiftRideEvent> events) throws Exception {
+    if (partitions == 0) {
+      return send("", queueName, batchProps, format.encodeBatch(events), events.size());
+    }
+    List<List<LiftRideEvent>> byPartition = new ArrayList<>(partitions);
+    for (int i = 0; i < partitions; i++) {
+      byPartition.add(null);
+    }
+    for (LiftRideEvent event : events) {
+      int partition = RidePartitions.partitionOf(event.getSkierID(), partitions);
+      if (byPartition.get(partition) == null) {
+        byPartition.set(partition, new ArrayList<>());
+      }
+      byPartition.get(partition).add(event);
+    }
+    List<CompletableFuture<Void>> published = new ArrayList<>();
+    for (int i = 0; i < partitions; i++) {
+      List<LiftRideEvent> partitionEvents = byPartition.get(i);
+      if (partitionEvents == null) {
+        continue;
+      }
+      try {
+        published.add(send(RidePartitions.EXCHANGE_NAME, routingKeys[i], batchProps,
+            format.encodeBatch(partitionEvents), partitionEvents.size()));
+      } catch (Exception e) {
+        // the other partitions' messages may be out already, report the batch as failed
+        published.add(CompletableFuture.failedFuture(e));
+      }
+    }
+    return published.size() == 1 ? published.get(0)
+        : CompletableFuture.allOf(published.toArray(new CompletableFuture<?>[0]));
+  }
+
+  private String routingKeyOf(LiftRideEvent event) {
+    return routingKeys[RidePartitions.partitionOf(event.getSkierID(), partitions)];
+  }
+
+  /**
+   * Publish one message carrying numEvents lift rides.
+   */
+  public CompletableFuture<Void> send(String exchange, String routingKey,
+      AMQP.BasicProperties props, byte[] body, int numEvents) throws Exception {
+    Channel channel = pool.borrowObject();
+    try {
+      if (confirmTracker == null) {
+        channel.basicPublish(exchange, routingKey, props, body);
+        return CompletableFuture.completedFuture(null);
+      }
+      // register the sequence number first, the confirm can arrive before basicPublish returns
+      long seqNo = channel.getNextPublishSeqNo();
+      ConfirmTracker.Tracked confirm = confirmTracker.track(channel, seqNo, numEvents);
+      try {
+        channel.basicPublish(exchange, routingKey, props, body);
+      } catch (IOException | RuntimeException e) {
+        confirm.untrack(e);
+        throw e;
+      }
+      return confirm.future();
+    } finally {
+      try {
+        pool.returnObject(channel);
+      } catch (Exception e) {
+        // Log an error if returning object to pool fails
+        System.err.println("Error returning channel to pool: " + e.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> publish(LiftRideEvent event) {
+    try {
+      return send(event);
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  @Override
+  public void close() {
+    // the pool belongs to the servlet, nothing to release here
+  }
+}
@@ -0,0 +1,16 @@
+package publisher;
+
+import java.util.concurrent.CompletableFuture;
+import model.LiftRideEvent;
+
+/**
+ * Hands lift ride events to RabbitMQ.
+ * The returned future completes once the event has been accepted for delivery,
+ * or completes exceptionally if it could not be published.
+ */
+public interface EventPublisher {
+
+  CompletableFuture<Void> publish(LiftRideEvent event);
+
+  void close();
+}
@@ -0,0 +1,197 @@
+package query;
+
+import exceptions.AggregateQueryException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Non-blocking client of the consumers' query servers, which hold the aggregates the GET
+ * endpoints answer from. Requests go out on a shared java.net.http client (HTTP/1.1 with
+ * kept-alive connections) and the futures complete on its executor, so no servlet thread
+ * waits for the consumer. A non-200 answer fails the future with an AggregateQueryException.
+ *
+ * When the skier partitions are split between consumers (-Dsubscribe), each one holds the
+ * rides of its own skiers only. Every query then goes to all of them and the answers are
+ * combined: a skier's rides are all in one partition, so verticals and unique skier counts
+ * add up, and the resorts are the union. If any consumer fails, the whole query fails
+ * rather than answer from part of the rides.
+ */
+public class AggregateClient {
+
+  public static final String DEFAULT_URL = "http://localhost:8081";
+  private static final int EXECUTOR_THREADS = 4;
+
+  private final HttpClient client;
+  private final List<String> baseUrls = new ArrayList<>();
+  private final Duration timeout;
+  // query servers a connection failure was already reported for
+  private final Set<String> reportedUnreachable = ConcurrentHashMap.newKeySet();
+
+  /**
+   * @param baseUrls where the query server of every consumer listens, comma-separated, e.g.
+   *     http://10.0.0.5:8081,http://10.0.0.6:8081
+   */
+  public AggregateClient(String baseUrls, Duration timeout, Executor executor) {
+    for (String url : baseUrls.split(",")) {
+      url = url.trim();
+      if (!url.isEmpty()) {
+        this.baseUrls.add(url.endsWith("/") ? url.substring(0, url.length() - 1) : url);
+      }
+    }
+    if (this.baseUrls.isEmpty()) {
+      throw new IllegalArgumentException("No query server URL given");
+    }
+    this.timeout = timeout;
+    this.client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(timeout)
+        .executor(executor)
+        .build();
+  }
+
+  /**
+   * Ask every consumer once without waiting for the answers, so a query server that is not
+   * running or not reachable from here is reported when the servlet starts rather than by
+   * the first GET answering 503
+   */
+  public void probe() {
+    resortIDs();
+  }
+
+  /**
+   * A small pool of daemon threads to complete the futures on, named prefix-N
+   */
+  public static ExecutorService newExecutor(String prefix) {
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(EXECUTOR_THREADS, r -> {
+      Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * Total vertical of the skier at the resort on that day
+   */
+  public CompletableFuture<Long> dayVertical(int skierID, int resortID, int seasonID,
+      int dayID) {
+    return getAll("/day-vertical?skier=" + skierID + "&resort=" + resortID + "&season="
+        + seasonID + "&day=" + dayID, body -> Long.parseLong(body.trim()), Long::sum);
+  }
+
+  /**
+   * Vertical of the skier per season, summed over the resorts; every season with rides when
+   * seasonIDs is empty
+   */
+  public CompletableFuture<Map<Integer, Long>> seasonVerticals(int skierID,
+      List<Integer> resortIDs, List<Integer> seasonIDs) {
+    StringBuilder path = new StringBuilder("/season-vertical?skier=").append(skierID);
+    for (int resortID : resortIDs) {
+      path.append("&resort=").append(resortID);
+    }
+    for (int seasonID : seasonIDs) {
+      path.append("&season=").append(seasonID);
+    }
+    return getAll(path.toString(), body -> {
+      Map<Integer, Long> totals = new LinkedHashMap<>();
+      for (String line : lines(body)) {
+        int space = line.indexOf(' ');
+        totals.put(Integer.parseInt(line.substring(0, space)),
+            Long.parseLong(line.substring(space + 1)));
+      }
+      return totals;
+    }, (a, b) -> {
+      b.forEach((season, total) -> a.merge(season, total, Long::sum));
+      return a;
+    });
+  }
+
+  /**
+   * Number of distinct skiers at the resort on that day
+   */
+  public CompletableFuture<Integer> uniqueSkiers(int resortID, int seasonID, int dayID) {
+    return getAll("/unique-skiers?resort=" + resortID + "&season=" + seasonID + "&day=" + dayID,
+        body -> Integer.parseInt(body.trim()), Integer::sum);
+  }
+
+  /**
+   * resortIDs the consumers have rides for, in order
+   */
+  public CompletableFuture<List<Integer>> resortIDs() {
+    return getAll("/resorts", body -> {
+      TreeSet<Integer> ids = new TreeSet<>();
+      for (String line : lines(body)) {
+        ids.add(Integer.parseInt(line));
+      }
+      return ids;
+    }, (a, b) -> {
+      a.addAll(b);
+      return a;
+    }).thenApply(ArrayList::new);
+  }
+
+  /**
+   * Ask every consumer at once and combine their parsed answers
+   */
+  private <T> CompletableFuture<T> getAll(String pathAndQuery, Function<String, T> parse,
+      BinaryOperator<T> combine) {
+    CompletableFuture<T> result = null;
+    for (String baseUrl : baseUrls) {
+      CompletableFuture<T> answer = get(baseUrl, pathAndQuery).thenApply(parse);
+      result = result == null ? answer : result.thenCombine(answer, combine);
+    }
+    return result;
+  }
+
+  private CompletableFuture<String> get(String baseUrl, String pathAndQuery) {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + pathAndQuery))
+        .timeout(timeout)
+        .GET()
+        .build();
+    return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        .thenApply(response -> {
+          if (response.statusCode() != 200) {
+            throw new AggregateQueryException(response.statusCode(), response.body());
+          }
+          return response.body();
+        })
+        .whenComplete((body, e) -> {
+          Throwable cause = e instanceof CompletionException && e.getCause() != null
+              ? e.getCause() : e;
+          if (cause instanceof ConnectException && reportedUnreachable.add(baseUrl)) {
+            System.err.println("WARNING: cannot connect to the consumer's query server at "
+                + baseUrl + ", GETs will answer 503. Start the consumer with -DqueryPort=8081"
+                + " and a -DqueryHost this host can reach, and list it in queryUrl.");
+          }
+        });
+  }
+
+  private static List<String> lines(String body) {
+    List<String> lines = new ArrayList<>();
+    for (String line : body.split("\n")) {
+      if (!line.isEmpty()) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,104 @@
+package query;
+
+import com.google.gson.Gson;
+import exceptions.AggregateQueryException;
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Completes a GET asynchronously from the answer of an AggregateClient query: the container
+ * thread is released right away, the response is written as JSON when the future completes,
+ * or 503 if the consumer cannot be reached or does not answer within the timeout.
+ */
+public final class QueryResponder {
+
+  private static final Gson GSON = new Gson();
+
+  private QueryResponder() {
+  }
+
+  public static void respond(HttpServletRequest req, CompletableFuture<?> answer,
+      long timeoutMillis) {
+    AsyncContext asyncContext = req.startAsync();
+    asyncContext.setTimeout(timeoutMillis);
+    // the answer and the container timeout race to complete the request
+    AtomicBoolean done = new AtomicBoolean(false);
+    asyncContext.addListener(new AsyncListener() {
+      @Override
+      public void onTimeout(AsyncEvent event) {
+        complete(asyncContext, done, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+            "Timed out reading from the consumer");
+      }
+
+      @Override
+      public void onError(AsyncEvent event) {
+        complete(asyncContext, done, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, null);
+      }
+
+      @Override
+      public void onComplete(AsyncEvent event) {
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) {
+      }
+    });
+    answer.whenComplete((body, e) -> {
+      if (e == null) {
+        complete(asyncContext, done, HttpServletResponse.SC_OK, GSON.toJson(body),
+            "application/json");
+        return;
+      }
+      Throwable cause = e instanceof CompletionException && e.getCause() != null
+          ? e.getCause() : e;
+      if (cause instanceof AggregateQueryException) {
+        System.err.println("Error reading aggregates: " + cause.getMessage());
+        complete(asyncContext, done, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+            "Failed to read from the consumer");
+      } else if (cause instanceof HttpTimeoutException) {
+        complete(asyncContext, done, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+            "Timed out reading from the consumer");
+      } else if (cause instanceof IOException) {
+        complete(asyncContext, done, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+            "Consumer is unreachable, retry later");
+      } else {
+        System.err.println("Error reading aggregates: " + cause);
+        complete(asyncContext, done, HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+            "Failed to read from the consumer");
+      }
+    });
+  }
+
+  private static void complete(AsyncContext asyncContext, AtomicBoolean done, int status,
+      String message) {
+    complete(asyncContext, done, status, message, "text/plain");
+  }
+
+  private static void complete(AsyncContext asyncContext, AtomicBoolean done, int status,
+      String body, String contentType) {
+    if (!done.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      HttpServletResponse res = (HttpServletResponse) asyncContext.getResponse();
+      res.setStatus(status);
+      if (body != null) {
+        res.setContentType(contentType);
+        res.setCharacterEncoding("UTF-8");
+        res.getWriter().write(body);
+      }
+    } catch (IOException | IllegalStateException e) {
+      System.err.println("Error writing async response: " + e.getMessage());
+    } finally {
+      asyncContext.complete();
+    }
+  }
+}
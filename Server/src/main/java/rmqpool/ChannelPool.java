@@ -0,0 +1,16 @@
+package rmqpool;
+
+import com.rabbitmq.client.Channel;
+
+/**
+ * How publishers get hold of a channel. A borrowed channel is used by the calling thread
+ * only and handed back with returnObject once the publish is done.
+ */
+public interface ChannelPool {
+
+  Channel borrowObject() throws Exception;
+
+  void returnObject(Channel channel) throws Exception;
+
+  void close();
+}
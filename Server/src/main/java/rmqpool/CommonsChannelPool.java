@@ -0,0 +1,38 @@
+package rmqpool;
+
+import com.rabbitmq.client.Channel;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * ChannelPool backed by the Apache commons GenericObjectPool
+ */
+public class CommonsChannelPool implements ChannelPool {
+
+  private final GenericObjectPool<Channel> pool;
+
+  public CommonsChannelPool(GenericObjectPool<Channel> pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public Channel borrowObject() throws Exception {
+    return pool.borrowObject();
+  }
+
+  @Override
+  public void returnObject(Channel channel) {
+    pool.returnObject(channel);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("commons active=%d idle=%d meanWait=%dms maxWait=%dms",
+        pool.getNumActive(), pool.getNumIdle(), pool.getMeanBorrowWaitDuration().toMillis(),
+        pool.getMaxBorrowWaitDuration().toMillis());
+  }
+
+  @Override
+  public void close() {
+    pool.close();  // This closes all idle channels in the pool
+  }
+}
@@ -0,0 +1,212 @@
+package rmqpool;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks publisher confirms for channels in confirm-select mode.
+ * Publishers register the sequence number of each message before publishing it and get a
+ * future that completes when the broker acks it (or fails when it nacks it or the channel
+ * dies). Confirms are handled asynchronously by a ConfirmListener per channel, so publishing
+ * stays pipelined. The number of unconfirmed events is bounded by a watermark that callers
+ * check with isSaturated() to shed load instead of queueing more work.
+ */
+public class ConfirmTracker {
+
+  private final int watermark;
+  // unconfirmed events across all channels
+  private final AtomicInteger unconfirmed = new AtomicInteger(0);
+  private final Map<Channel, ConcurrentNavigableMap<Long, Pending>> outstanding =
+      new ConcurrentHashMap<>();
+  private final LongAdder confirmedCount = new LongAdder();
+  private final LongAdder nackedCount = new LongAdder();
+  private final LongAdder confirmNanos = new LongAdder();
+  private final AtomicLong maxConfirmNanos = new AtomicLong(0);
+
+  public ConfirmTracker(int watermark) {
+    this.watermark = watermark;
+  }
+
+  /**
+   * Put the channel in confirm-select mode and start listening for its confirms.
+   * Called once per channel by RMQChannelFactory.
+   */
+  public void register(Channel channel) throws IOException {
+    ConcurrentNavigableMap<Long, Pending> pending = new ConcurrentSkipListMap<>();
+    outstanding.put(channel, pending);
+    channel.confirmSelect();
+    channel.addConfirmListener(new ConfirmListener() {
+      @Override
+      public void handleAck(long deliveryTag, boolean multiple) {
+        settle(pending, deliveryTag, multiple, true);
+      }
+
+      @Override
+      public void handleNack(long deliveryTag, boolean multiple) {
+        settle(pending, deliveryTag, multiple, false);
+      }
+    });
+    // whatever is still unconfirmed when the channel goes away will never be confirmed
+    channel.addShutdownListener(cause -> {
+      outstanding.remove(channel);
+      for (Long seqNo : pending.keySet()) {
+        remove(pending, seqNo, cause);
+      }
+    });
+  }
+
+  /**
+   * Start tracking a message that is about to be published with the given sequence number.
+   *
+   * @param numEvents number of lift ride events the message carries
+   * @return the tracked message, whose future the broker's confirm completes
+   */
+  public Tracked track(Channel channel, long seqNo, int numEvents) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    ConcurrentNavigableMap<Long, Pending> pending = outstanding.get(channel);
+    if (pending == null) {
+      future.completeExceptionally(new IllegalStateException("Channel is not in confirm mode"));
+      return new Tracked(null, seqNo, future);
+    }
+    unconfirmed.addAndGet(numEvents);
+    pending.put(seqNo, new Pending(System.nanoTime(), numEvents, future));
+    if (outstanding.get(channel) != pending) {
+      // the channel shut down in between and its listener may have drained the map already
+      remove(pending, seqNo, new IOException("Channel closed while publishing"));
+    }
+    return new Tracked(pending, seqNo, future);
+  }
+
+  private void remove(ConcurrentNavigableMap<Long, Pending> pending, long seqNo,
+      Exception cause) {
+    Pending p = pending.remove(seqNo);
+    if (p != null) {
+      unconfirmed.addAndGet(-p.numEvents);
+      p.future.completeExceptionally(cause);
+    }
+  }
+
+  private void settle(ConcurrentNavigableMap<Long, Pending> pending, long deliveryTag,
+      boolean multiple, boolean ack) {
+    if (multiple) {
+      ConcurrentNavigableMap<Long, Pending> confirmed = pending.headMap(deliveryTag, true);
+      for (Long seqNo : confirmed.keySet()) {
+        settle(pending.remove(seqNo), ack);
+      }
+    } else {
+      settle(pending.remove(deliveryTag), ack);
+    }
+  }
+
+  private void settle(Pending p, boolean ack) {
+    if (p == null) {
+      return;
+    }
+    unconfirmed.addAndGet(-p.numEvents);
+    long latency = System.nanoTime() - p.sentNanos;
+    confirmNanos.add(latency);
+    maxConfirmNanos.accumulateAndGet(latency, Math::max);
+    if (ack) {
+      confirmedCount.increment();
+      p.future.complete(null);
+    } else {
+      nackedCount.increment();
+      p.future.completeExceptionally(new IOException("Message nacked by the broker"));
+    }
+  }
+
+  /**
+   * True when the unconfirmed backlog is at or above the watermark
+   */
+  public boolean isSaturated() {
+    return unconfirmed.get() >= watermark;
+  }
+
+  public int getUnconfirmed() {
+    return unconfirmed.get();
+  }
+
+  public long getConfirmedCount() {
+    return confirmedCount.sum();
+  }
+
+  public long getNackedCount() {
+    return nackedCount.sum();
+  }
+
+  /**
+   * Mean time from publish to confirm (acks and nacks), in microseconds
+   */
+  public double getMeanConfirmLatencyMicros() {
+    long settled = confirmedCount.sum() + nackedCount.sum();
+    return settled == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(confirmNanos.sum()) / (double) settled;
+  }
+
+  public long getMaxConfirmLatencyMicros() {
+    return TimeUnit.NANOSECONDS.toMicros(maxConfirmNanos.get());
+  }
+
+  @Override
+  public String toString() {
+    return String.format("confirmed=%d nacked=%d unconfirmed=%d meanLatency=%.1fus maxLatency=%dus",
+        getConfirmedCount(), getNackedCount(), getUnconfirmed(), getMeanConfirmLatencyMicros(),
+        getMaxConfirmLatencyMicros());
+  }
+
+  /**
+   * A message being tracked, from track() until its confirm
+   */
+  public final class Tracked {
+
+    // the map track() put the message in, null if the channel was not in confirm mode
+    private final ConcurrentNavigableMap<Long, Pending> pending;
+    private final long seqNo;
+    private final CompletableFuture<Void> future;
+
+    private Tracked(ConcurrentNavigableMap<Long, Pending> pending, long seqNo,
+        CompletableFuture<Void> future) {
+      this.pending = pending;
+      this.seqNo = seqNo;
+      this.future = future;
+    }
+
+    /**
+     * Completed by the broker's confirm, failed by a nack or the channel going away
+     */
+    public CompletableFuture<Void> future() {
+      return future;
+    }
+
+    /**
+     * Forget the message because its publish failed before reaching the broker
+     */
+    public void untrack(Exception cause) {
+      if (pending != null) {
+        remove(pending, seqNo, cause);
+      }
+    }
+  }
+
+  private static class Pending {
+
+    private final long sentNanos;
+    private final int numEvents;
+    private final CompletableFuture<Void> future;
+
+    private Pending(long sentNanos, int numEvents, CompletableFuture<Void> future) {
+      this.sentNanos = sentNanos;
+      this.numEvents = numEvents;
+      this.future = future;
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package rmqpool;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.NoOpMetricsCollector;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed group of broker connections that channels are spread across, so publishing is not
+ * limited to one socket and one connection-level frame writer.
+ * RMQChannelFactory asks the group where to open each new channel: round-robin, or on the
+ * connection with the fewest open channels (LEAST_LOADED, which also refills a connection
+ * whose channels died). Each connection gets its own MetricsCollector, counting its open
+ * channels and published messages, and report() turns the counts into per-connection rates.
+ */
+public class ConnectionGroup {
+
+  public enum Placement {
+    ROUND_ROBIN,
+    LEAST_LOADED
+  }
+
+  private final List<Connection> connections;
+  private final List<ConnectionStats> stats;
+  private final Placement placement;
+  private final AtomicInteger next = new AtomicInteger(0);
+  // counts at the previous report(), to turn totals into rates
+  private final long[] lastPublished;
+  private long lastReportNanos;
+
+  /**
+   * Open size connections with the given factory. The factory's MetricsCollector is replaced.
+   */
+  public ConnectionGroup(ConnectionFactory factory, int size, Placement placement)
+      throws IOException, TimeoutException {
+    if (size < 1) {
+      throw new IllegalArgumentException("A connection group needs at least one connection");
+    }
+    this.placement = placement;
+    this.connections = new ArrayList<>(size);
+    this.stats = new ArrayList<>(size);
+    try {
+      for (int i = 0; i < size; i++) {
+        // the collector is bound to the connection when it is created
+        ConnectionStats collector = new ConnectionStats();
+        factory.setMetricsCollector(collector);
+        connections.add(factory.newConnection("publisher-" + i));
+        stats.add(collector);
+      }
+    } catch (IOException | TimeoutException e) {
+      close();
+      throw e;
+    }
+    this.lastPublished = new long[size];
+    this.lastReportNanos = System.nanoTime();
+  }
+
+  /**
+   * The connection a new channel should be opened on
+   */
+  public Connection nextConnection() {
+    if (placement == Placement.ROUND_ROBIN) {
+      return connections.get(Math.floorMod(next.getAndIncrement(), connections.size()));
+    }
+    int best = 0;
+    for (int i = 1; i < connections.size(); i++) {
+      if (stats.get(i).openChannels.get() < stats.get(best).openChannels.get()) {
+        best = i;
+      }
+    }
+    return connections.get(best);
+  }
+
+  public Connection get(int index) {
+    return connections.get(index);
+  }
+
+  public int size() {
+    return connections.size();
+  }
+
+  public long getPublishedCount(int index) {
+    return stats.get(index).published.sum();
+  }
+
+  public int getOpenChannels(int index) {
+    return stats.get(index).openChannels.get();
+  }
+
+  /**
+   * One line per connection: open channels, messages published and the publish rate since
+   * the previous report (or since the group was opened)
+   */
+  public synchronized String report() {
+    long now = System.nanoTime();
+    double seconds = Math.max(now - lastReportNanos, 1) / 1e9;
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < connections.size(); i++) {
+      long published = getPublishedCount(i);
+      sb.append(String.format("connection %d: channels=%d published=%d rate=%.0f msg/s%n", i,
+          getOpenChannels(i), published, (published - lastPublished[i]) / seconds));
+      lastPublished[i] = published;
+    }
+    lastReportNanos = now;
+    return sb.toString();
+  }
+
+  public void close() {
+    for (Connection connection : connections) {
+      if (connection.isOpen()) {
+        try {
+          connection.close();
+        } catch (IOException e) {
+          System.err.println("Error closing RabbitMQ connection: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Metrics of one connection, updated by the client library
+   */
+  private static class ConnectionStats extends NoOpMetricsCollector {
+
+    private final AtomicInteger openChannels = new AtomicInteger(0);
+    private final LongAdder published = new LongAdder();
+
+    @Override
+    public void newChannel(Channel channel) {
+      openChannels.incrementAndGet();
+      // the client only reports new channels, closes are seen through the channel itself
+      channel.addShutdownListener(cause -> closeChannel(channel));
+    }
+
+    @Override
+    public void closeChannel(Channel channel) {
+      openChannels.decrementAndGet();
+    }
+
+    @Override
+    public void basicPublish(Channel channel) {
+      published.increment();
+    }
+  }
+}
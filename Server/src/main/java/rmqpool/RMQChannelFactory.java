@@ -26,23 +26,43 @@ public class RMQChannelFactory extends BasePooledObjectFactory<Channel> {
 
   // Valid RMQ connection  
   private final Connection connection;
+  // when set, channels are spread over the group's connections instead
+  private final ConnectionGroup group;
+  // when set, channels are created in confirm-select mode and registered with the tracker
+  private final ConfirmTracker confirmTracker;
   // used to count created channels for debugging
   private int count;
 
   public RMQChannelFactory(Connection connection) {
+    this(connection, null);
+  }
+
+  public RMQChannelFactory(Connection connection, ConfirmTracker confirmTracker) {
     this.connection = connection;
+    this.group = null;
+    this.confirmTracker = confirmTracker;
+    count = 0;
+  }
+
+  public RMQChannelFactory(ConnectionGroup group, ConfirmTracker confirmTracker) {
+    this.connection = null;
+    this.group = group;
+    this.confirmTracker = confirmTracker;
     count = 0;
   }
 
   @Override
   synchronized public Channel create() throws Exception {
     count ++;
-    Channel chan = connection.createChannel();
+    Channel chan = (group != null ? group.nextConnection() : connection).createChannel();
     // Uncomment the line below to validate the expected number of channels are being created
     // System.out.println("Channel created: " + count);
     if (chan == null) {
       throw new Exception("Channel creation failed: received null channel." + count);
     }
+    if (confirmTracker != null) {
+      confirmTracker.register(chan);
+    }
     return chan;
 
   }
@@ -5,61 +5,310 @@ package rmqpool; /**
  */
 
 import com.rabbitmq.client.Channel;
-import java.io.IOException;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 
 /**
- * A simple RabbitMQ channel pool based on a BlockingQueue implementation
+ * A bounded RabbitMQ channel pool without locks on the borrow/return path.
  *
+ * Idle channels sit in an array-based ring (a bounded multi-producer multi-consumer queue):
+ * every slot carries a sequence number telling whether it is ready to be filled or emptied,
+ * and borrow/return claim a slot with one CAS on the head or tail counter. When the ring is
+ * empty borrowers spin briefly, then park with a growing back-off until maxWait runs out.
+ * Channels are checked with isOpen() on borrow and on return, dead ones are replaced through
+ * the RMQChannelFactory; a channel that could not be created is retried by a later borrower,
+ * so the pool never shrinks for good.
  */
-public class RMQChannelPool {
+public class RMQChannelPool implements ChannelPool {
 
-  // used to store and distribute channels  
-  private final BlockingQueue<Channel> pool;
+  public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(5);
+  private static final int SPINS = 64;
+  private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+  private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  // ring of idle channels, a power of two over twice the capacity so that a return rarely
+  // reaches a slot a descheduled borrower has not released yet
+  private final AtomicReferenceArray<Channel> slots;
+  // per slot: equal to the position when it can be filled, position + 1 when it can be taken
+  private final AtomicLongArray sequences;
+  private final int mask;
+  // next position to take from and to fill
+  private final AtomicLong head = new AtomicLong(0);
+  private final AtomicLong tail = new AtomicLong(0);
   // fixed size pool
-  private int capacity;
+  private final int capacity;
+  // channels that have to be (re)created before they can be borrowed
+  private final AtomicInteger missing = new AtomicInteger(0);
+  private final long maxWaitNanos;
   // used to ceate channels
-  private RMQChannelFactory factory;
+  private final RMQChannelFactory factory;
+  private volatile boolean closed;
 
+  private final AtomicInteger inUse = new AtomicInteger(0);
+  private final LongAdder borrowCount = new LongAdder();
+  private final LongAdder borrowWaitNanos = new LongAdder();
+  private final AtomicLong maxBorrowWaitNanos = new AtomicLong(0);
+  private final LongAdder replacedCount = new LongAdder();
+  private final LongAdder timeoutCount = new LongAdder();
 
   public RMQChannelPool(int maxSize, RMQChannelFactory factory) {
+    this(maxSize, factory, DEFAULT_MAX_WAIT);
+  }
+
+  public RMQChannelPool(int maxSize, RMQChannelFactory factory, Duration maxWait) {
     this.capacity = maxSize;
-    pool = new LinkedBlockingQueue<>(capacity);
+    int ringSize = Integer.highestOneBit(Math.max(1, capacity)) << 2;
+    this.slots = new AtomicReferenceArray<>(ringSize);
+    this.sequences = new AtomicLongArray(ringSize);
+    for (int i = 0; i < ringSize; i++) {
+      sequences.set(i, i);
+    }
+    this.mask = ringSize - 1;
     this.factory = factory;
+    this.maxWaitNanos = maxWait.toNanos();
     for (int i = 0; i < capacity; i++) {
-      Channel chan;
       try {
-        chan = factory.create();
-        pool.put(chan);
-      } catch (IOException | InterruptedException ex) {
-        Logger.getLogger(RMQChannelPool.class.getName()).log(Level.SEVERE, null, ex);
+        offer(factory.create());
       } catch (Exception e) {
-        throw new RuntimeException(e);
+        System.err.println("Error creating channel for pool: " + e.getMessage());
+        missing.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Borrow an open channel, waiting up to maxWait for one to be returned.
+   *
+   * @throws NoSuchElementException if no channel became available within maxWait
+   */
+  @Override
+  public Channel borrowObject() throws Exception {
+    long start = System.nanoTime();
+    Channel channel = poll();
+    if (channel == null) {
+      channel = claimMissing() ? createMissing() : await(start);
+    }
+    if (!channel.isOpen()) {
+      channel = replace();
+    }
+    inUse.incrementAndGet();
+    recordWait(System.nanoTime() - start);
+    return channel;
+  }
+
+  /**
+   * Give a borrowed channel back; a closed one is replaced by a new channel
+   */
+  @Override
+  public void returnObject(Channel channel) throws Exception {
+    if (channel == null) {
+      return;
+    }
+    inUse.decrementAndGet();
+    if (!channel.isOpen()) {
+      // leave the slot to the next borrower that finds no idle channel
+      missing.incrementAndGet();
+      replacedCount.increment();
+      return;
+    }
+    if (closed) {
+      closeQuietly(channel);
+      return;
+    }
+    if (!offer(channel)) {
+      // only possible if a channel was returned twice
+      closeQuietly(channel);
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    Channel channel;
+    while ((channel = poll()) != null) {
+      closeQuietly(channel);
+    }
+  }
+
+  /**
+   * Wait for a channel to be returned, or for a missing one to be created
+   */
+  private Channel await(long start) throws Exception {
+    long parkNanos = MIN_PARK_NANOS;
+    for (int i = 0; ; i++) {
+      if (closed) {
+        throw new IllegalStateException("Channel pool is closed");
+      }
+      Channel channel = poll();
+      if (channel != null) {
+        return channel;
+      }
+      if (claimMissing()) {
+        return createMissing();
+      }
+      long remaining = maxWaitNanos - (System.nanoTime() - start);
+      if (remaining <= 0) {
+        timeoutCount.increment();
+        throw new NoSuchElementException(
+            "Timeout waiting for a channel, all " + capacity + " in use");
+      }
+      if (i < SPINS) {
+        Thread.onSpinWait();
+      } else {
+        LockSupport.parkNanos(Math.min(parkNanos, remaining));
+        parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+        if (Thread.interrupted()) {
+          throw new InterruptedException("Interrupted waiting for a channel");
+        }
+      }
+    }
+  }
+
+  /**
+   * Take an idle channel from the ring, null if there is none
+   */
+  private Channel poll() {
+    long pos = head.get();
+    while (true) {
+      int index = (int) pos & mask;
+      long diff = sequences.get(index) - (pos + 1);
+      if (diff == 0) {
+        if (head.compareAndSet(pos, pos + 1)) {
+          Channel channel = slots.get(index);
+          slots.set(index, null);
+          // free the slot for the fill one lap later
+          sequences.set(index, pos + mask + 1);
+          return channel;
+        }
+        pos = head.get();
+      } else if (diff < 0) {
+        return null;  // empty
+      } else {
+        pos = head.get();  // another borrower took this slot
       }
+    }
+  }
 
+  /**
+   * Put an idle channel in the ring, false if it is full
+   */
+  private boolean offer(Channel channel) {
+    long pos = tail.get();
+    while (true) {
+      int index = (int) pos & mask;
+      long diff = sequences.get(index) - pos;
+      if (diff == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          slots.set(index, channel);
+          sequences.set(index, pos + 1);
+          return true;
+        }
+        pos = tail.get();
+      } else if (diff < 0) {
+        if (pos - head.get() >= slots.length()) {
+          return false;  // full
+        }
+        // a borrower claimed this slot a lap ago and has not released it yet
+        Thread.yield();
+        pos = tail.get();
+      } else {
+        pos = tail.get();
+      }
     }
   }
 
-  public Channel borrowObject() throws IOException {
+  private boolean claimMissing() {
+    int n;
+    while ((n = missing.get()) > 0) {
+      if (missing.compareAndSet(n, n - 1)) {
+        return true;
+      }
+    }
+    return false;
+  }
 
+  // called after claimMissing, gives the claim back if the channel cannot be created
+  private Channel createMissing() throws Exception {
     try {
-      return pool.take();
-    } catch (InterruptedException e) {
-      throw new RuntimeException("Error: no channels available" + e.toString());
+      return factory.create();
+    } catch (Exception e) {
+      missing.incrementAndGet();
+      throw e;
     }
   }
 
-  public void returnObject(Channel channel) throws Exception {
-    if (channel != null) {
-      pool.add(channel);
+  private Channel replace() throws Exception {
+    replacedCount.increment();
+    try {
+      return factory.create();
+    } catch (Exception e) {
+      missing.incrementAndGet();
+      throw e;
     }
   }
 
-  public void close() {
-    // pool.close();
+  private void recordWait(long nanos) {
+    borrowCount.increment();
+    borrowWaitNanos.add(nanos);
+    long max;
+    while (nanos > (max = maxBorrowWaitNanos.get())
+        && !maxBorrowWaitNanos.compareAndSet(max, nanos)) {
+      // retry
+    }
+  }
+
+  private static void closeQuietly(Channel channel) {
+    try {
+      if (channel.isOpen()) {
+        channel.close();
+      }
+    } catch (Exception e) {
+      System.err.println("Error closing channel: " + e.getMessage());
+    }
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public int getInUse() {
+    return inUse.get();
+  }
+
+  public int getIdle() {
+    return (int) Math.max(0, tail.get() - head.get());
+  }
+
+  public long getReplacedCount() {
+    return replacedCount.sum();
+  }
+
+  public long getTimeoutCount() {
+    return timeoutCount.sum();
+  }
+
+  public double getMeanBorrowWaitMicros() {
+    long n = borrowCount.sum();
+    return n == 0 ? 0 : borrowWaitNanos.sum() / (n * 1000.0);
+  }
+
+  public long getMaxBorrowWaitMicros() {
+    return TimeUnit.NANOSECONDS.toMicros(maxBorrowWaitNanos.get());
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "capacity=%d inUse=%d idle=%d replaced=%d timeouts=%d meanWait=%.1fus maxWait=%dus",
+        capacity, getInUse(), getIdle(), getReplacedCount(), getTimeoutCount(),
+        getMeanBorrowWaitMicros(), getMaxBorrowWaitMicros());
   }
-}
\ No newline at end of file
+}
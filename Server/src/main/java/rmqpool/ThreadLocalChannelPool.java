@@ -0,0 +1,87 @@
+package rmqpool;
+
+import com.rabbitmq.client.Channel;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-affine channels: every publishing thread owns one channel, created by the factory
+ * on its first publish and reused for all later ones, so borrow and return are a ThreadLocal
+ * lookup with no shared lock or queue. A channel found closed is replaced.
+ *
+ * The number of channels follows the number of publishing threads (the container's worker
+ * pool, or the publisher stage's threads), keep it below the connection's channel-max.
+ * All channels are closed with the pool, which the servlet closes in destroy().
+ */
+public class ThreadLocalChannelPool implements ChannelPool {
+
+  private final RMQChannelFactory factory;
+  private final ThreadLocal<Channel> channels = new ThreadLocal<>();
+  // every live channel handed out, for close()
+  private final Set<Channel> created = ConcurrentHashMap.newKeySet();
+  private volatile boolean closed;
+
+  public ThreadLocalChannelPool(RMQChannelFactory factory) {
+    this.factory = factory;
+  }
+
+  @Override
+  public Channel borrowObject() throws Exception {
+    if (closed) {
+      // close() cannot reach other threads' ThreadLocals, each thread drops its own
+      channels.remove();
+      throw new IllegalStateException("Channel pool is closed");
+    }
+    Channel channel = channels.get();
+    if (channel == null || !channel.isOpen()) {
+      if (channel != null) {
+        // forget the dead channel first, so a failed create does not leave it to the thread
+        created.remove(channel);
+        channels.remove();
+      }
+      channel = factory.create();
+      created.add(channel);
+      if (closed && created.remove(channel)) {
+        // close() ran while it was created and missed it
+        channel.close();
+        throw new IllegalStateException("Channel pool is closed");
+      }
+      channels.set(channel);
+    }
+    return channel;
+  }
+
+  @Override
+  public void returnObject(Channel channel) {
+    // the channel stays with its thread
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    for (Iterator<Channel> it = created.iterator(); it.hasNext(); ) {
+      Channel channel = it.next();
+      it.remove();
+      try {
+        if (channel.isOpen()) {
+          channel.close();
+        }
+      } catch (Exception e) {
+        System.err.println("Error closing channel: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Number of channels currently owned by threads
+   */
+  public int size() {
+    return created.size();
+  }
+
+  @Override
+  public String toString() {
+    return "threadlocal channels=" + size();
+  }
+}
@@ -0,0 +1,46 @@
+package test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.LongSupplier;
+
+/**
+ * Minimal micro-benchmark harness for the parser benchmarks in this package: warms the
+ * operation up, then reports the mean time and the bytes allocated per operation on the
+ * calling thread (via com.sun.management.ThreadMXBean).
+ */
+public class Bench {
+
+  private static final int WARMUP_ROUNDS = 5;
+  private static final int MEASURE_ROUNDS = 5;
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  // results are folded in here so the JIT cannot drop the benchmarked work
+  private static long sink;
+
+  public static void run(String label, int opsPerRound, LongSupplier op) {
+    for (int r = 0; r < WARMUP_ROUNDS; r++) {
+      round(opsPerRound, op);
+    }
+    long bestNanos = Long.MAX_VALUE;
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+    for (int r = 0; r < MEASURE_ROUNDS; r++) {
+      bestNanos = Math.min(bestNanos, round(opsPerRound, op));
+    }
+    long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+    System.out.printf("%-40s %10.1f ns/op %10.1f B/op%n", label,
+        bestNanos / (double) opsPerRound, allocated / (double) (opsPerRound * MEASURE_ROUNDS));
+  }
+
+  private static long round(int ops, LongSupplier op) {
+    long start = System.nanoTime();
+    for (int i = 0; i < ops; i++) {
+      sink += op.getAsLong();
+    }
+    return System.nanoTime() - start;
+  }
+
+  public static long sink() {
+    return sink;
+  }
+}
@@ -0,0 +1,71 @@
+package test;
+
+import com.google.gson.Gson;
+import exceptions.InvalidEventException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import model.LiftRide;
+import parser.LiftRideBodyParser;
+
+/**
+ * Per-request cost of reading the POST body: the servlet's original approach (read lines
+ * into a StringBuilder, then Gson.fromJson on the String) against LiftRideBodyParser
+ * streaming the bytes. The request stream is a reused ByteArrayInputStream and the legacy
+ * path does not count the reader Tomcat recycles, so only the parsing work is measured.
+ *
+ * Run the main method; no broker or container is needed.
+ */
+public class BodyParserBenchmark {
+
+  private static final int OPS_PER_ROUND = 1_000_000;
+  private static final Gson GSON = new Gson();
+  private static final byte[][] BODIES = {
+      "{\"time\":217,\"liftID\":21}".getBytes(StandardCharsets.UTF_8),
+      "{\"liftID\":5,\"time\":360,\"waitTime\":0}".getBytes(StandardCharsets.UTF_8),
+  };
+
+  public static void main(String[] args) {
+    ByteArrayInputStream[] streams = new ByteArrayInputStream[BODIES.length];
+    for (int i = 0; i < BODIES.length; i++) {
+      streams[i] = new ByteArrayInputStream(BODIES[i]);
+      if (!legacyParse(BODIES[i]).equals(streamParse(streams[i], BODIES[i].length))) {
+        throw new IllegalStateException("Parsers disagree on " + new String(BODIES[i], StandardCharsets.UTF_8));
+      }
+    }
+    int[] next = {0, 0};
+    Bench.run("StringBuilder + Gson.fromJson", OPS_PER_ROUND, () -> {
+      LiftRide ride = legacyParse(BODIES[next[0]++ % BODIES.length]);
+      return ride.getTime() + ride.getLiftID();
+    });
+    Bench.run("LiftRideBodyParser (streaming)", OPS_PER_ROUND, () -> {
+      int i = next[1]++ % BODIES.length;
+      LiftRide ride = streamParse(streams[i], BODIES[i].length);
+      return ride.getTime() + ride.getLiftID();
+    });
+    System.out.println("(sink " + Bench.sink() + ")");
+  }
+
+  /**
+   * What parseLiftRideBody did per request: readLine() decodes the line into a String,
+   * lines are joined in a StringBuilder, and Gson parses the joined String.
+   */
+  private static LiftRide legacyParse(byte[] body) {
+    StringBuilder sb = new StringBuilder();
+    String line = new String(body, StandardCharsets.UTF_8);
+    sb.append(line);
+    return GSON.fromJson(sb.toString(), LiftRide.class);
+  }
+
+  private static LiftRide streamParse(ByteArrayInputStream in, int contentLength) {
+    in.reset();
+    try {
+      return LiftRideBodyParser.parse(in, contentLength);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (InvalidEventException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
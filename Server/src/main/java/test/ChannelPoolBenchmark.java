@@ -0,0 +1,178 @@
+package test;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import rmqpool.ChannelPool;
+import rmqpool.CommonsChannelPool;
+import rmqpool.RMQChannelFactory;
+import rmqpool.RMQChannelPool;
+import rmqpool.ThreadLocalChannelPool;
+
+/**
+ * Compares the channel access strategies SkierServlet can be configured with
+ * (GenericObjectPool, RMQChannelPool and thread-local channels) at 50/200/500 publishing
+ * threads, each thread doing borrow / basicPublish / return in a loop.
+ *
+ * Without arguments the channels are in-memory stubs whose basicPublish does nothing, so
+ * the numbers are the cost of the pool itself. Pass a broker host to publish for real
+ * (to a non-durable "channel_pool_bench" queue).
+ */
+public class ChannelPoolBenchmark {
+
+  private static final int[] THREAD_COUNTS = {50, 200, 500};
+  private static final int PUBLISHES_PER_THREAD = 20_000;
+  private static final int WARMUP_PUBLISHES_PER_THREAD = 2_000;
+  // same pool size and wait as the servlet
+  private static final int NUM_CHANS = 500;
+  private static final int WAIT_TIME_SECS = 5;
+  private static final String QUEUE_NAME = "channel_pool_bench";
+  private static final byte[] BODY =
+      "{\"time\":217,\"liftID\":21}".getBytes(StandardCharsets.UTF_8);
+
+  public static void main(String[] args) throws Exception {
+    Connection connection;
+    if (args.length > 0) {
+      ConnectionFactory factory = new ConnectionFactory();
+      factory.setHost(args[0]);
+      factory.setUsername("admin");
+      factory.setPassword("admin");
+      connection = factory.newConnection();
+      try (Channel channel = connection.createChannel()) {
+        channel.queueDeclare(QUEUE_NAME, false, false, true, null);
+      }
+    } else {
+      connection = stubConnection();
+    }
+    System.out.printf("%-14s %8s %14s %16s%n", "pool", "threads", "publishes/s", "borrow+return ns");
+    for (int threads : THREAD_COUNTS) {
+      for (String strategy : new String[]{"commons", "rmq", "threadlocal"}) {
+        ChannelPool pool = createPool(strategy, connection);
+        run(pool, threads, WARMUP_PUBLISHES_PER_THREAD);
+        Result result = run(pool, threads, PUBLISHES_PER_THREAD);
+        pool.close();
+        System.out.printf("%-14s %8d %14.0f %16.1f%n", strategy, threads,
+            result.publishes * 1e9 / result.elapsedNanos,
+            result.poolNanos / (double) result.publishes);
+      }
+    }
+    if (args.length > 0) {
+      connection.close();
+    }
+  }
+
+  private static ChannelPool createPool(String strategy, Connection connection) {
+    RMQChannelFactory factory = new RMQChannelFactory(connection);
+    if ("threadlocal".equals(strategy)) {
+      return new ThreadLocalChannelPool(factory);
+    }
+    if ("rmq".equals(strategy)) {
+      return new RMQChannelPool(NUM_CHANS, factory, Duration.ofSeconds(WAIT_TIME_SECS));
+    }
+    GenericObjectPoolConfig<Channel> config = new GenericObjectPoolConfig<>();
+    config.setMaxTotal(NUM_CHANS);
+    config.setMaxIdle(NUM_CHANS);
+    config.setBlockWhenExhausted(true);
+    config.setMaxWait(Duration.ofSeconds(WAIT_TIME_SECS));
+    return new CommonsChannelPool(new GenericObjectPool<>(factory, config));
+  }
+
+  private static Result run(ChannelPool pool, int threads, int publishesPerThread)
+      throws InterruptedException {
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(threads);
+    AtomicLong poolNanos = new AtomicLong();
+    AtomicLong failures = new AtomicLong();
+    for (int t = 0; t < threads; t++) {
+      new Thread(() -> {
+        long inPool = 0;
+        try {
+          start.await();
+          for (int i = 0; i < publishesPerThread; i++) {
+            long t0 = System.nanoTime();
+            Channel channel = pool.borrowObject();
+            long t1 = System.nanoTime();
+            try {
+              channel.basicPublish("", QUEUE_NAME, null, BODY);
+            } finally {
+              long t2 = System.nanoTime();
+              pool.returnObject(channel);
+              inPool += t1 - t0 + System.nanoTime() - t2;
+            }
+          }
+        } catch (Exception e) {
+          if (failures.getAndIncrement() == 0) {
+            e.printStackTrace();
+          }
+        } finally {
+          poolNanos.addAndGet(inPool);
+          done.countDown();
+        }
+      }).start();
+    }
+    long begin = System.nanoTime();
+    start.countDown();
+    done.await();
+    long elapsed = System.nanoTime() - begin;
+    if (failures.get() > 0) {
+      System.err.println(failures.get() + " threads failed");
+    }
+    return new Result((long) threads * publishesPerThread, elapsed, poolNanos.get());
+  }
+
+  /**
+   * A Connection whose channels accept every call and do nothing
+   */
+  private static Connection stubConnection() {
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+        new Class<?>[]{Connection.class}, (proxy, method, methodArgs) -> {
+          if (method.getName().equals("createChannel")) {
+            return stubChannel();
+          }
+          return defaultValue(method.getReturnType());
+        });
+  }
+
+  private static Channel stubChannel() {
+    return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(),
+        new Class<?>[]{Channel.class}, (proxy, method, methodArgs) -> {
+          if (method.getName().equals("isOpen")) {
+            return true;
+          }
+          return defaultValue(method.getReturnType());
+        });
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    if (type == boolean.class) {
+      return false;
+    }
+    if (type == int.class) {
+      return 0;
+    }
+    if (type == long.class) {
+      return 0L;
+    }
+    return null;
+  }
+
+  private static class Result {
+
+    private final long publishes;
+    private final long elapsedNanos;
+    private final long poolNanos;
+
+    private Result(long publishes, long elapsedNanos, long poolNanos) {
+      this.publishes = publishes;
+      this.elapsedNanos = elapsedNanos;
+      this.poolNanos = poolNanos;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package test;
+
+import parser.SkierPathParser;
+
+/**
+ * Compares SkierPathParser with the split("/") based parser SkierServlet used before it,
+ * on valid and invalid paths. Also checks both agree on every benchmarked path.
+ *
+ * Run the main method; no broker or container is needed.
+ */
+public class PathParserBenchmark {
+
+  private static final int OPS_PER_ROUND = 2_000_000;
+  private static final String[] VALID_PATHS = {
+      "/1/seasons/2025/days/1/skiers/123",
+      "/10/seasons/2025/days/366/skiers/100000",
+      "/7/seasons/2025/days/42/skiers/54321/",
+  };
+  private static final String[] INVALID_PATHS = {
+      "/1/seasons/2025/day/1/skiers/123",       // bad literal
+      "/1/seasons/2025/days/1/skiers",          // too short
+      "/x/seasons/2025/days/1/skiers/123",      // not a number
+      "/11/seasons/2025/days/1/skiers/123",     // resort out of range
+      "/1/seasons/2024/days/1/skiers/123",      // wrong season
+      "/1/seasons/2025/days/1/skiers/100001",   // skier out of range
+  };
+
+  public static void main(String[] args) {
+    checkAgreement(VALID_PATHS);
+    checkAgreement(INVALID_PATHS);
+
+    Bench.run("split parser, valid paths", OPS_PER_ROUND, rotate(VALID_PATHS, true));
+    Bench.run("SkierPathParser, valid paths", OPS_PER_ROUND, rotate(VALID_PATHS, false));
+    Bench.run("split parser, invalid paths", OPS_PER_ROUND, rotate(INVALID_PATHS, true));
+    Bench.run("SkierPathParser, invalid paths", OPS_PER_ROUND, rotate(INVALID_PATHS, false));
+    System.out.println("(sink " + Bench.sink() + ")");
+  }
+
+  private static java.util.function.LongSupplier rotate(String[] paths, boolean legacy) {
+    int[] next = {0};
+    return () -> {
+      String path = paths[next[0]++ % paths.length];
+      return legacy ? splitParse(path) : SkierPathParser.parse(path);
+    };
+  }
+
+  private static void checkAgreement(String[] paths) {
+    for (String path : paths) {
+      long expected = splitParse(path);
+      long actual = SkierPathParser.parse(path);
+      if (expected != actual) {
+        throw new IllegalStateException(path + ": split parser " + expected + ", SkierPathParser " + actual);
+      }
+    }
+  }
+
+  /**
+   * The servlet's original parsing and validation, returning SkierPathParser's encoding
+   */
+  private static long splitParse(String urlPath) {
+    String[] parts = urlPath.split("/");
+    if (parts.length != 8 ||
+        !"seasons".equals(parts[2]) ||
+        !"days".equals(parts[4]) ||
+        !"skiers".equals(parts[6])) {
+      return SkierPathParser.FORMAT_ERROR;
+    }
+    int resortId, seasonId, dayId, skierId;
+    try {
+      resortId = Integer.parseInt(parts[1]);
+      seasonId = Integer.parseInt(parts[3]);
+      dayId = Integer.parseInt(parts[5]);
+      skierId = Integer.parseInt(parts[7]);
+    } catch (NumberFormatException e) {
+      return SkierPathParser.NUMBER_ERROR;
+    }
+    if (resortId < 1 || resortId > 10) {
+      return SkierPathParser.RESORT_RANGE_ERROR;
+    }
+    if (seasonId != 2025) {
+      return SkierPathParser.SEASON_ERROR;
+    }
+    if (dayId < 1 || dayId > 366) {
+      return SkierPathParser.DAY_RANGE_ERROR;
+    }
+    if (skierId < 1 || skierId > 100000) {
+      return SkierPathParser.SKIER_RANGE_ERROR;
+    }
+    // same packing as SkierPathParser
+    return (long) resortId << 52 | (long) seasonId << 36 | (long) dayId << 24 | skierId;
+  }
+}
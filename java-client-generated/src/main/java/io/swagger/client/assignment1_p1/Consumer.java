@@ -5,7 +5,6 @@ import io.swagger.client.ApiResponse;
 import io.swagger.client.api.SkiersApi;
 import io.swagger.client.assignment_model.ConsumerResult;
 import io.swagger.client.assignment_model.LiftRideEvent;
-import io.swagger.client.assignment_model.RequestLog;
 import java.util.ArrayList;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
@@ -1,32 +1,36 @@
 package io.swagger.client.assignment1_p2;
 
-import io.swagger.client.assignment_model.RequestLog;
+import io.swagger.client.assignment_model.LatencyRecorder;
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Comparator;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.Writer;
 
 public class CSVHandler {
 
    // Writes the request logs to a CSV file.
-  public static void writeLogsToCSV(List<RequestLog> logs, String filePath) {
-    try (FileWriter writer = new FileWriter(filePath)) {
+  public static void writeLogsToCSV(LatencyRecorder logs, String filePath) {
+    if (!logs.hasLog()) {
+      System.out.println("Request log is off, no CSV file written");
+      return;
+    }
+    try (Writer writer = new BufferedWriter(new FileWriter(filePath))) {
       // Write CSV header
       writer.append("Start Time,End Time,Latency (ms),Status Code,Attempt,Consumer ID,Request Type\n");
 
       // Write each log entry
-      for (RequestLog log : logs) {
-        long latency = log.getEndTime() - log.getStartTime();  // Calculate request duration
+      for (int i = 0; i < logs.getCount(); i++) {
+        long latency = logs.getLatencyMicros(i) / 1000;  // request duration in ms
+        long startTime = logs.getStartMillis(i);
 
-        writer.append(log.getStartTime() + ",")
-            .append(log.getEndTime() + ",")
-            .append(latency + ",")
-            .append(log.getStatusCode() + ",")
-            .append(log.getAttempt() + ",")
-            .append(log.getConsumerID() + ",")
-            .append(log.getRequestType())
-            .append("\n");
+        writer.append(Long.toString(startTime)).append(',')
+            .append(Long.toString(startTime + latency)).append(',')
+            .append(Long.toString(latency)).append(',')
+            .append(Integer.toString(logs.getStatusCode(i))).append(',')
+            .append(Integer.toString(logs.getAttempt(i))).append(',')
+            .append(Integer.toString(logs.getConsumerID(i))).append(',')
+            .append("POST")
+            .append('\n');
       }
 
       System.out.println("Logs successfully written to " + filePath);
@@ -43,52 +47,31 @@ public class CSVHandler {
    * p99 (99th percentile) response time.
    * min and max response time (millisecs)
    */
-  public static void printResponseTimeStats(List<RequestLog> logs) {
-    if (logs.isEmpty()) {
+  public static void printResponseTimeStats(LatencyRecorder logs) {
+    if (logs.getCount() == 0) {
       System.out.println("No logs available to calculate statistics.");
       return;
     }
 
-    List<Long> responseTimes = logs.stream()
-        .map(log -> log.getEndTime() - log.getStartTime())
-        .sorted()
-        .collect(Collectors.toList());
-
-    long totalRequests = responseTimes.size();
-    long totalResponseTime = responseTimes.stream().mapToLong(Long::longValue).sum();
-
-    // Mean Response Time
-    double meanResponseTime = (double) totalResponseTime / totalRequests;
-
-    // Median Response Time
-    double medianResponseTime = totalRequests % 2 == 0
-        ? (responseTimes.get((int) totalRequests / 2 - 1) + responseTimes.get((int) totalRequests / 2)) / 2.0
-        : responseTimes.get((int) totalRequests / 2);
+    long totalRequests = logs.getCount();
 
     // Throughput: Total Requests / Wall Time (in seconds)
-    long wallStartTime = logs.stream().min(Comparator.comparingLong(RequestLog::getStartTime)).get().getStartTime();
-    long wallEndTime = logs.stream().max(Comparator.comparingLong(RequestLog::getEndTime)).get().getEndTime();
-    double wallTimeInSeconds = (wallEndTime - wallStartTime) / 1000.0;
+    double wallTimeInSeconds = logs.getWallMillis() / 1000.0;
     double throughput = totalRequests / wallTimeInSeconds;
 
-    // P99 Response Time (99th percentile)
-    int p99Index = (int) Math.ceil(0.99 * totalRequests) - 1;
-    long p99ResponseTime = responseTimes.get(p99Index);
-//    int p999Index = (int) Math.ceil(0.999 * totalRequests) - 1;
-//    long p999ResponseTime = responseTimes.get(p999Index);
-    // Min and Max Response Time
-    long minResponseTime = responseTimes.get(0);
-    long maxResponseTime = responseTimes.get(responseTimes.size() - 1);
-
     // Print Statistics
     System.out.println("\n\nResponse Time Statistics:");
-    System.out.printf("Mean Response Time      : %.2f ms%n", meanResponseTime);
-    System.out.printf("Median Response Time    : %.2f ms%n", medianResponseTime);
+    System.out.printf("Mean Response Time      : %.2f ms%n", logs.getMeanMicros() / 1000.0);
+    System.out.printf("Median Response Time    : %.2f ms%n", millis(logs.percentileMicros(50)));
     System.out.printf("Throughput              : %.2f requests/second%n", throughput);
-    System.out.printf("P99 Response Time       : %d ms%n", p99ResponseTime);
-//    System.out.printf("P999 Response Time      : %d ms%n", p999ResponseTime);
-    System.out.printf("Min Response Time       : %d ms%n", minResponseTime);
-    System.out.printf("Max Response Time       : %d ms%n", maxResponseTime);
+    System.out.printf("P99 Response Time       : %.2f ms%n", millis(logs.percentileMicros(99)));
+    System.out.printf("P999 Response Time      : %.2f ms%n", millis(logs.percentileMicros(99.9)));
+    System.out.printf("Min Response Time       : %.2f ms%n", millis(logs.getMinMicros()));
+    System.out.printf("Max Response Time       : %.2f ms%n", millis(logs.getMaxMicros()));
+  }
+
+  private static double millis(long micros) {
+    return micros / 1000.0;
   }
 
 }
@@ -4,9 +4,8 @@ import io.swagger.client.ApiException;
 import io.swagger.client.ApiResponse;
 import io.swagger.client.api.SkiersApi;
 import io.swagger.client.assignment_model.ConsumerResult;
+import io.swagger.client.assignment_model.LatencyRecorder;
 import io.swagger.client.assignment_model.LiftRideEvent;
-import io.swagger.client.assignment_model.RequestLog;
-import java.util.ArrayList;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -21,8 +20,8 @@ public class Consumer implements Runnable {
   private final Integer numRequests;
   private Integer numOfFailures = 0;
   private Integer numOfSuccess = 0;
-  private final SkiersApi skiersApi = new SkiersApi();
-  private final ArrayList<RequestLog> requestLogs = new ArrayList<>();
+  private final SkiersApi skiersApi;
+  private final LatencyRecorder latencies = new LatencyRecorder();
   private final ConcurrentLinkedQueue<ConsumerResult> resultsQueue;  // Queue to send results to main thread
   private final CountDownLatch firstDoneLatch;
 
@@ -33,16 +32,26 @@ public class Consumer implements Runnable {
 
   public Consumer(BlockingQueue<LiftRideEvent> queue, int consumerId, int numRequests,
       ConcurrentLinkedQueue<ConsumerResult> resultsQueue, CountDownLatch firstDoneLatch) {
+    this(queue, consumerId, numRequests, resultsQueue, firstDoneLatch, new SkiersApi());
+    this.skiersApi.getApiClient().setBasePath(BASE_URL);
+  }
+
+  /**
+   * @param skiersApi shared by the consumers of a run, see SharedApiClient
+   */
+  public Consumer(BlockingQueue<LiftRideEvent> queue, int consumerId, int numRequests,
+      ConcurrentLinkedQueue<ConsumerResult> resultsQueue, CountDownLatch firstDoneLatch,
+      SkiersApi skiersApi) {
     this.queue = queue;
     this.consumerId = consumerId;
     this.numRequests = numRequests;
     this.resultsQueue = resultsQueue;
     this.firstDoneLatch = firstDoneLatch;
+    this.skiersApi = skiersApi;
   }
 
   @Override
   public void run() {
-    this.skiersApi.getApiClient().setBasePath(BASE_URL);
     IntStream.range(0, numRequests).anyMatch(i -> {
       try {
         LiftRideEvent event = queue.take();
@@ -56,7 +65,7 @@ public class Consumer implements Runnable {
       return false;
     });
     // Wait for all asynchronous tasks to complete
-    resultsQueue.add(new ConsumerResult(numOfSuccess, numOfFailures, requestLogs));
+    resultsQueue.add(new ConsumerResult(numOfSuccess, numOfFailures, latencies));
     if (firstDoneLatch.getCount() > 0) {
       firstDoneLatch.countDown();
     }
@@ -68,12 +77,12 @@ public class Consumer implements Runnable {
     IntStream.rangeClosed(1, MAX_RETRIES).anyMatch(attempt -> {
       try {
         long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         ApiResponse<Void> response = skiersApi.writeNewLiftRideWithHttpInfo(event.getBody(),
             event.getResortID(), event.getSeasonID(), event.getDayID(), event.getSkierID());
-        long end = System.currentTimeMillis();
-        // Add to the requestLogs
-        requestLogs.add(
-            new RequestLog(start, end, response.getStatusCode(), attempt, consumerId, "POST"));
+        // Add to the request log
+        latencies.record(start, System.nanoTime() - startNanos, response.getStatusCode(), attempt,
+            consumerId);
 
         if (response.getStatusCode() == 201) {    // break if status code is 200
           numOfSuccess++;
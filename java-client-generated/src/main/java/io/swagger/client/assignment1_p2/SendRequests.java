@@ -2,12 +2,11 @@ package io.swagger.client.assignment1_p2;
 
 import io.swagger.client.assignment_model.ConsumerResult;
 import io.swagger.client.assignment_model.LiftRideEvent;
-import io.swagger.client.assignment_model.RequestLog;
+import io.swagger.client.assignment_model.LatencyRecorder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.stream.IntStream;
@@ -39,12 +38,13 @@ public class SendRequests {
   private static void summarizeResult(Long end, Long start) {
     int totalFailures = 0;
     int totalSuccess = 0;
-    List<RequestLog> allLogs = new CopyOnWriteArrayList<>();
+    List<LatencyRecorder> recorders = new ArrayList<>();
     for (ConsumerResult result : resultsQueue) {
       totalSuccess += result.getNumOfSuccess();
       totalFailures += result.getNumOfFailures();
-      allLogs.addAll(result.getLogs());
+      recorders.add(result.getLatencies());
     }
+    LatencyRecorder allLogs = LatencyRecorder.merge(recorders);
 
     long wallTime = (end - start);
     System.out.println("\nAll done. Main thread exiting：");
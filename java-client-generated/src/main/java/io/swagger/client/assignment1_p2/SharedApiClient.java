@@ -0,0 +1,113 @@
+package io.swagger.client.assignment1_p2;
+
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+import io.swagger.client.ApiClient;
+import io.swagger.client.api.SkiersApi;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.SocketFactory;
+
+/**
+ * One ApiClient for every consumer of a run, tuned for maxConnections concurrent requests.
+ *
+ * OkHttp's defaults keep only 5 idle connections (and run at most 5 async calls per host),
+ * so with hundreds of consumers almost every request closed its connection afterwards and the
+ * next one opened a new one. Here the pool keeps maxConnections alive for KEEP_ALIVE_MINUTES
+ * and the dispatcher allows as many calls in flight. Sockets are counted as they are opened,
+ * which measures the connection churn of a run.
+ */
+public class SharedApiClient {
+
+  private static final long KEEP_ALIVE_MINUTES = 5;
+  private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+  private static final int READ_TIMEOUT_MILLIS = 10_000;
+  private static final int WRITE_TIMEOUT_MILLIS = 10_000;
+
+  private final ApiClient apiClient = new ApiClient();
+  private final ConnectionPool connectionPool;
+  private final AtomicLong socketsOpened = new AtomicLong();
+
+  public SharedApiClient(String basePath, int maxConnections) {
+    apiClient.setBasePath(basePath);
+    apiClient.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+    apiClient.setReadTimeout(READ_TIMEOUT_MILLIS);
+    apiClient.setWriteTimeout(WRITE_TIMEOUT_MILLIS);
+    OkHttpClient httpClient = apiClient.getHttpClient();
+    connectionPool = new ConnectionPool(maxConnections, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES);
+    httpClient.setConnectionPool(connectionPool);
+    httpClient.getDispatcher().setMaxRequests(maxConnections);
+    httpClient.getDispatcher().setMaxRequestsPerHost(maxConnections);
+    httpClient.setSocketFactory(new CountingSocketFactory());
+  }
+
+  /**
+   * A SkiersApi on the shared client, cheap enough to create one per consumer
+   */
+  public SkiersApi skiersApi() {
+    return new SkiersApi(apiClient);
+  }
+
+  public long getSocketsOpened() {
+    return socketsOpened.get();
+  }
+
+  /**
+   * Close the pooled connections and stop the dispatcher's threads once the run is over.
+   * Calls still in flight are allowed to finish.
+   */
+  public void close() {
+    connectionPool.evictAll();
+    apiClient.getHttpClient().getDispatcher().getExecutorService().shutdown();
+  }
+
+  @Override
+  public String toString() {
+    return "sockets opened " + socketsOpened.get() + ", pooled "
+        + connectionPool.getConnectionCount() + " (" + connectionPool.getIdleConnectionCount()
+        + " idle)";
+  }
+
+  /**
+   * The default socket factory, counting the sockets it creates
+   */
+  private class CountingSocketFactory extends SocketFactory {
+
+    private final SocketFactory delegate = SocketFactory.getDefault();
+
+    @Override
+    public Socket createSocket() throws IOException {
+      socketsOpened.incrementAndGet();
+      return delegate.createSocket();
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+      socketsOpened.incrementAndGet();
+      return delegate.createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort)
+        throws IOException {
+      socketsOpened.incrementAndGet();
+      return delegate.createSocket(host, port, localHost, localPort);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+      socketsOpened.incrementAndGet();
+      return delegate.createSocket(host, port);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress,
+        int localPort) throws IOException {
+      socketsOpened.incrementAndGet();
+      return delegate.createSocket(address, port, localAddress, localPort);
+    }
+  }
+}
@@ -1,26 +1,23 @@
 package io.swagger.client.assignment_model;
 
-import io.swagger.client.assignment_model.RequestLog;
-import java.util.List;
-
 public class ConsumerResult {
   private final Integer numOfSuccess;
   private final Integer numOfFailures;
-  private final List<RequestLog> logs;
+  private final LatencyRecorder latencies;
 
-  public ConsumerResult(Integer numOfSuccess, Integer numOfFailures, List<RequestLog> logs) {
+  public ConsumerResult(Integer numOfSuccess, Integer numOfFailures, LatencyRecorder latencies) {
     this.numOfSuccess = numOfSuccess;
     this.numOfFailures = numOfFailures;
-    this.logs = logs;
+    this.latencies = latencies;
   }
 
   public ConsumerResult(Integer numOfSuccess, Integer numOfFailures) {
     this.numOfSuccess = numOfSuccess;
     this.numOfFailures = numOfFailures;
-    this.logs = null;
+    this.latencies = null;
   }
 
   public Integer getNumOfSuccess() { return numOfSuccess; }
   public Integer getNumOfFailures() { return numOfFailures; }
-  public List<RequestLog> getLogs() { return logs; }
+  public LatencyRecorder getLatencies() { return latencies; }
 }
@@ -0,0 +1,193 @@
+package io.swagger.client.assignment_model;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Response times of one consumer's requests, in primitive arrays that grow by doubling, so
+ * recording allocates nothing per request. With the request log on it also keeps the start
+ * time, status code, attempt and consumer of every request for the CSV file.
+ *
+ * A recorder has a single writer; the recorders of a run are merged once every consumer is
+ * done, and the statistics are read from the merged one.
+ */
+public class LatencyRecorder {
+
+  // -DrequestLog=false keeps only the response times, and no CSV file is written
+  public static final boolean REQUEST_LOG =
+      Boolean.parseBoolean(System.getProperty("requestLog", "true"));
+  // small, a run may have tens of thousands of consumers sending a few requests each
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final boolean keepLog;
+  private int count;
+  private long[] latencyMicros;
+  private long[] startMillis;
+  private int[] statusCodes;
+  private int[] attempts;
+  private int[] consumerIDs;
+  private long firstStartMillis = Long.MAX_VALUE;
+  private long lastEndMillis = Long.MIN_VALUE;
+  private long totalMicros;
+  // latencies in order, null until asked for after the last record()
+  private long[] sortedLatencies;
+
+  public LatencyRecorder() {
+    this(REQUEST_LOG);
+  }
+
+  /**
+   * @param keepLog keep every request for writeLogsToCSV, not only its response time
+   */
+  public LatencyRecorder(boolean keepLog) {
+    this(keepLog, INITIAL_CAPACITY);
+  }
+
+  private LatencyRecorder(boolean keepLog, int capacity) {
+    this.keepLog = keepLog;
+    latencyMicros = new long[capacity];
+    if (keepLog) {
+      startMillis = new long[capacity];
+      statusCodes = new int[capacity];
+      attempts = new int[capacity];
+      consumerIDs = new int[capacity];
+    }
+  }
+
+  /**
+   * Record one request, sent at startMillis and answered latencyNanos later
+   */
+  public void record(long startMillis, long latencyNanos, int statusCode, int attempt,
+      int consumerID) {
+    if (count == latencyMicros.length) {
+      grow(count * 2);
+    }
+    long micros = latencyNanos / 1000;
+    latencyMicros[count] = micros;
+    if (keepLog) {
+      this.startMillis[count] = startMillis;
+      statusCodes[count] = statusCode;
+      attempts[count] = attempt;
+      consumerIDs[count] = consumerID;
+    }
+    count++;
+    totalMicros += micros;
+    firstStartMillis = Math.min(firstStartMillis, startMillis);
+    lastEndMillis = Math.max(lastEndMillis, startMillis + micros / 1000);
+    sortedLatencies = null;
+  }
+
+  /**
+   * One recorder holding the requests of all of them, each copied once
+   */
+  public static LatencyRecorder merge(Collection<LatencyRecorder> recorders) {
+    int total = 0;
+    boolean keepLog = true;
+    for (LatencyRecorder recorder : recorders) {
+      total += recorder.count;
+      keepLog &= recorder.keepLog;
+    }
+    LatencyRecorder merged = new LatencyRecorder(keepLog, Math.max(total, 1));
+    for (LatencyRecorder recorder : recorders) {
+      int n = recorder.count;
+      System.arraycopy(recorder.latencyMicros, 0, merged.latencyMicros, merged.count, n);
+      if (keepLog) {
+        System.arraycopy(recorder.startMillis, 0, merged.startMillis, merged.count, n);
+        System.arraycopy(recorder.statusCodes, 0, merged.statusCodes, merged.count, n);
+        System.arraycopy(recorder.attempts, 0, merged.attempts, merged.count, n);
+        System.arraycopy(recorder.consumerIDs, 0, merged.consumerIDs, merged.count, n);
+      }
+      merged.count += n;
+      merged.totalMicros += recorder.totalMicros;
+      merged.firstStartMillis = Math.min(merged.firstStartMillis, recorder.firstStartMillis);
+      merged.lastEndMillis = Math.max(merged.lastEndMillis, recorder.lastEndMillis);
+    }
+    return merged;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public boolean hasLog() {
+    return keepLog;
+  }
+
+  public double getMeanMicros() {
+    return count == 0 ? 0 : (double) totalMicros / count;
+  }
+
+  /**
+   * Response time at the given percentile (0 to 100), nearest-rank
+   */
+  public long percentileMicros(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long[] latencies = sortedLatencies();
+    int rank = (int) Math.ceil(percentile / 100 * count);
+    return latencies[Math.min(count - 1, Math.max(0, rank - 1))];
+  }
+
+  public long getMinMicros() {
+    return count == 0 ? 0 : sortedLatencies()[0];
+  }
+
+  public long getMaxMicros() {
+    return count == 0 ? 0 : sortedLatencies()[count - 1];
+  }
+
+  /**
+   * From the first request sent to the last one answered
+   */
+  public long getWallMillis() {
+    return count == 0 ? 0 : lastEndMillis - firstStartMillis;
+  }
+
+  public long getStartMillis(int i) {
+    return startMillis[i];
+  }
+
+  public long getLatencyMicros(int i) {
+    return latencyMicros[i];
+  }
+
+  public int getStatusCode(int i) {
+    return statusCodes[i];
+  }
+
+  public int getAttempt(int i) {
+    return attempts[i];
+  }
+
+  public int getConsumerID(int i) {
+    return consumerIDs[i];
+  }
+
+  /**
+   * The latencies in order. With the request log the columns are left in request order and
+   * the latencies sorted in a copy.
+   */
+  private long[] sortedLatencies() {
+    if (sortedLatencies == null) {
+      if (keepLog) {
+        sortedLatencies = Arrays.copyOf(latencyMicros, count);
+        Arrays.sort(sortedLatencies);
+      } else {
+        Arrays.sort(latencyMicros, 0, count);
+        sortedLatencies = latencyMicros;
+      }
+    }
+    return sortedLatencies;
+  }
+
+  private void grow(int capacity) {
+    latencyMicros = Arrays.copyOf(latencyMicros, capacity);
+    if (keepLog) {
+      startMillis = Arrays.copyOf(startMillis, capacity);
+      statusCodes = Arrays.copyOf(statusCodes, capacity);
+      attempts = Arrays.copyOf(attempts, capacity);
+      consumerIDs = Arrays.copyOf(consumerIDs, capacity);
+    }
+  }
+}
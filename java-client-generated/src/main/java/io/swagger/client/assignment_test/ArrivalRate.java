@@ -0,0 +1,65 @@
+package io.swagger.client.assignment_test;
+
+/**
+ * Target request rate of the open-loop driver as a function of the time since the start
+ */
+public interface ArrivalRate {
+
+  /**
+   * Requests per second to send elapsedSecs after the start, always positive
+   */
+  double perSecond(double elapsedSecs);
+
+  static ArrivalRate fixed(double rate) {
+    requirePositive(rate);
+    return elapsedSecs -> rate;
+  }
+
+  /**
+   * start requests per second, increment more every stepSecs
+   */
+  static ArrivalRate step(double start, double increment, double stepSecs) {
+    requirePositive(start);
+    requirePositive(stepSecs);
+    return elapsedSecs -> Math.max(start,
+        start + increment * Math.floor(elapsedSecs / stepSecs));
+  }
+
+  /**
+   * From from to to requests per second linearly over durationSecs, then to
+   */
+  static ArrivalRate ramp(double from, double to, double durationSecs) {
+    requirePositive(from);
+    requirePositive(to);
+    requirePositive(durationSecs);
+    return elapsedSecs -> from + (to - from) * Math.min(1, elapsedSecs / durationSecs);
+  }
+
+  /**
+   * "fixed" rate, "step" start,increment,stepSecs or "ramp" from,to,durationSecs
+   *
+   * @throws IllegalArgumentException for another profile or a malformed spec
+   */
+  static ArrivalRate parse(String profile, String spec) {
+    String[] parts = spec.split(",");
+    double[] values = new double[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      values[i] = Double.parseDouble(parts[i].trim());
+    }
+    if (profile.equals("fixed") && values.length == 1) {
+      return fixed(values[0]);
+    } else if (profile.equals("step") && values.length == 3) {
+      return step(values[0], values[1], values[2]);
+    } else if (profile.equals("ramp") && values.length == 3) {
+      return ramp(values[0], values[1], values[2]);
+    }
+    throw new IllegalArgumentException("Expected fixed <rate>, step <start,increment,stepSecs>"
+        + " or ramp <from,to,durationSecs>, got " + profile + " " + spec);
+  }
+
+  static void requirePositive(double value) {
+    if (!(value > 0)) {
+      throw new IllegalArgumentException("Rates and durations must be positive: " + value);
+    }
+  }
+}
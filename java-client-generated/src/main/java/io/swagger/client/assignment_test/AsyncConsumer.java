@@ -0,0 +1,134 @@
+package io.swagger.client.assignment_test;
+
+import io.swagger.client.ApiCallback;
+import io.swagger.client.ApiException;
+import io.swagger.client.api.SkiersApi;
+import io.swagger.client.assignment_model.ConsumerResult;
+import io.swagger.client.assignment_model.LatencyRecorder;
+import io.swagger.client.assignment_model.LiftRideEvent;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the events of the queue with SkiersApi.writeNewLiftRideAsync, keeping up to window
+ * requests in flight: a permit is taken before a request is sent and given back when it
+ * finally succeeds or fails, so one thread and OkHttp's dispatcher replace a blocking thread
+ * per concurrent request. Retries follow Consumer.sendRequest: a 4XX or 5XX response, or a
+ * request that failed in transport, is retried up to MAX_RETRIES times before it counts as a
+ * failure, from the callback and without giving the permit back.
+ */
+public class AsyncConsumer implements Runnable {
+
+  public static final int MAX_RETRIES = 5;
+
+  private final BlockingQueue<LiftRideEvent> queue;
+  private final int window;
+  private final Semaphore inFlight;
+  private final SkiersApi skiersApi;
+  private final AtomicInteger numOfSuccess = new AtomicInteger(0);
+  private final AtomicInteger numOfFailures = new AtomicInteger(0);
+  // written from OkHttp's callback threads, under its lock
+  private final LatencyRecorder latencies = new LatencyRecorder();
+  private final ConcurrentLinkedQueue<ConsumerResult> resultsQueue;
+
+  /**
+   * @param skiersApi on a client whose dispatcher and pool allow window calls in flight, OkHttp
+   *     runs at most 5 calls per host by default (see SharedApiClient)
+   */
+  public AsyncConsumer(BlockingQueue<LiftRideEvent> queue, int window,
+      ConcurrentLinkedQueue<ConsumerResult> resultsQueue, SkiersApi skiersApi) {
+    this.queue = queue;
+    this.window = window;
+    this.inFlight = new Semaphore(window);
+    this.resultsQueue = resultsQueue;
+    this.skiersApi = skiersApi;
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (true) {
+        LiftRideEvent event = queue.take();
+        if (event.isPoisonPill()) {  // End if a poisonPill found
+          break;
+        }
+        inFlight.acquire();
+        send(event, 1);
+      }
+      // every permit is back once the last request has completed
+      inFlight.acquire(window);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (latencies) {
+      resultsQueue.add(new ConsumerResult(numOfSuccess.get(), numOfFailures.get(), latencies));
+    }
+  }
+
+  private void send(LiftRideEvent event, int attempt) {
+    long start = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
+    try {
+      skiersApi.writeNewLiftRideAsync(event.getBody(), event.getResortID(), event.getSeasonID(),
+          event.getDayID(), event.getSkierID(), new ApiCallback<Void>() {
+            @Override
+            public void onSuccess(Void result, int statusCode,
+                Map<String, List<String>> responseHeaders) {
+              record(start, startNanos, statusCode, attempt);
+              if (statusCode == 201) {
+                numOfSuccess.incrementAndGet();
+              } else {
+                numOfFailures.incrementAndGet();
+              }
+              inFlight.release();
+            }
+
+            @Override
+            public void onFailure(ApiException e, int statusCode,
+                Map<String, List<String>> responseHeaders) {
+              record(start, startNanos, statusCode, attempt);
+              // status 0 is a transport failure (refused, reset, timed out), retried like an
+              // error response as Consumer.sendRequest does
+              if (statusCode == 0) {
+                System.err.println("Error sending lift ride: " + e.getMessage() + " Attempt: "
+                    + attempt);
+              } else if (statusCode >= 400 && statusCode < 600) {
+                System.out.println("Received Error Code: " + statusCode + "Attempt: " + attempt);
+              }
+              if ((statusCode == 0 || statusCode >= 400 && statusCode < 600)
+                  && attempt < MAX_RETRIES) {
+                send(event, attempt + 1);
+                return;
+              }
+              numOfFailures.incrementAndGet();   // record the failed case
+              inFlight.release();
+            }
+
+            @Override
+            public void onUploadProgress(long bytesWritten, long contentLength, boolean done) {
+            }
+
+            @Override
+            public void onDownloadProgress(long bytesRead, long contentLength, boolean done) {
+            }
+          });
+    } catch (ApiException e) {
+      // the request could not be built, retrying would not help
+      System.err.println("Exception when calling SkiersApi#writeNewLiftRide");
+      e.printStackTrace();
+      numOfFailures.incrementAndGet();
+      inFlight.release();
+    }
+  }
+
+  private void record(long start, long startNanos, int statusCode, int attempt) {
+    long latencyNanos = System.nanoTime() - startNanos;
+    synchronized (latencies) {
+      latencies.record(start, latencyNanos, statusCode, attempt, 0);
+    }
+  }
+}
@@ -4,8 +4,8 @@ import io.swagger.client.ApiException;
 import io.swagger.client.ApiResponse;
 import io.swagger.client.api.SkiersApi;
 import io.swagger.client.assignment_model.ConsumerResult;
+import io.swagger.client.assignment_model.LatencyRecorder;
 import io.swagger.client.assignment_model.LiftRideEvent;
-import io.swagger.client.assignment_model.RequestLog;
 import java.util.ArrayList;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
@@ -24,7 +24,7 @@ public class Consumer implements Runnable {
   private AtomicInteger numOfSuccess2 = new AtomicInteger(0);
   private AtomicInteger numOfFailures2 = new AtomicInteger(0);
   private final SkiersApi skiersApi = new SkiersApi();
-  private final ArrayList<RequestLog> requestLogs = new ArrayList<>();
+  private final LatencyRecorder latencies = new LatencyRecorder();
   private final ConcurrentLinkedQueue<ConsumerResult> resultsQueue;  // Queue to send results to main thread
   private final CountDownLatch firstDoneLatch;
 
@@ -65,12 +65,12 @@ public class Consumer implements Runnable {
       return false;
     });
     // Wait for all asynchronous tasks to complete
-    resultsQueue.add(new ConsumerResult(numOfSuccess, numOfFailures, requestLogs));
+    resultsQueue.add(new ConsumerResult(numOfSuccess, numOfFailures, latencies));
 //    Test asynchronous
 //    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
 //    executor.shutdown();
 //    System.out.println("[Consumer-" + consumerId + "] Consumer Run Ends Here");
-//    resultsQueue.add(new ConsumerResult(numOfSuccess2.get(), numOfFailures2.get(), requestLogs));
+//    resultsQueue.add(new ConsumerResult(numOfSuccess2.get(), numOfFailures2.get(), latencies));
 
     if (firstDoneLatch.getCount() > 0) {
       firstDoneLatch.countDown();
@@ -83,12 +83,12 @@ public class Consumer implements Runnable {
     IntStream.rangeClosed(1, MAX_RETRIES).anyMatch(attempt -> {
       try {
         long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         ApiResponse<Void> response = skiersApi.writeNewLiftRideWithHttpInfo(event.getBody(),
             event.getResortID(), event.getSeasonID(), event.getDayID(), event.getSkierID());
-        long end = System.currentTimeMillis();
-        // Add to the requestLogs
-        requestLogs.add(
-            new RequestLog(start, end, response.getStatusCode(), attempt, consumerId, "POST"));
+        // Add to the request log
+        latencies.record(start, System.nanoTime() - startNanos, response.getStatusCode(), attempt,
+            consumerId);
 
         if (response.getStatusCode() == 201) {    // break if status code is 200
           numOfSuccess++;
@@ -118,12 +118,14 @@ public class Consumer implements Runnable {
     IntStream.rangeClosed(1, MAX_RETRIES).anyMatch(attempt -> {
       try {
         long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
         ApiResponse<Void> response = skiersApi.writeNewLiftRideWithHttpInfo(event.getBody(),
             event.getResortID(), event.getSeasonID(), event.getDayID(), event.getSkierID());
-        long end = System.currentTimeMillis();
-        // Add to the requestLogs
-        requestLogs.add(
-            new RequestLog(start, end, response.getStatusCode(), attempt, consumerId, "POST"));
+        // Add to the request log
+        synchronized (latencies) {  // shared by the executor's threads
+          latencies.record(start, System.nanoTime() - startNanos, response.getStatusCode(),
+              attempt, consumerId);
+        }
 
         if (response.getStatusCode() == 201) {    // break if status code is 200
           numOfSuccess2.incrementAndGet();
@@ -0,0 +1,159 @@
+package io.swagger.client.assignment_test;
+
+import io.swagger.client.ApiCallback;
+import io.swagger.client.ApiException;
+import io.swagger.client.api.SkiersApi;
+import io.swagger.client.assignment_model.ConsumerResult;
+import io.swagger.client.assignment_model.LatencyRecorder;
+import io.swagger.client.assignment_model.LiftRideEvent;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop driver: sends the events of the queue on a schedule set by an ArrivalRate, whether
+ * or not earlier requests have been answered, with SkiersApi.writeNewLiftRideAsync.
+ *
+ * A closed-loop consumer waits for each response before sending, so a slow server is sent
+ * less and the requests it would have delayed are never measured. Here each request has an
+ * intended send time on the schedule, and its response time is taken from that time to its
+ * final answer (retries included, as Consumer.sendRequest does them). Time spent waiting to
+ * be sent, behind the schedule or in OkHttp's dispatcher, therefore counts as latency.
+ */
+public class OpenLoopConsumer implements Runnable {
+
+  public static final int MAX_RETRIES = 5;
+
+  private final BlockingQueue<LiftRideEvent> queue;
+  private final ArrivalRate rate;
+  private final SkiersApi skiersApi;
+  private final AtomicInteger numOfSuccess = new AtomicInteger(0);
+  private final AtomicInteger numOfFailures = new AtomicInteger(0);
+  // written from OkHttp's callback threads, under its lock
+  private final LatencyRecorder latencies = new LatencyRecorder();
+  private final ConcurrentLinkedQueue<ConsumerResult> resultsQueue;
+  // one permit per request that got its final answer
+  private final Semaphore completed = new Semaphore(0);
+  private long maxLagNanos;
+  private long scheduleNanos;
+
+  public OpenLoopConsumer(BlockingQueue<LiftRideEvent> queue, ArrivalRate rate,
+      ConcurrentLinkedQueue<ConsumerResult> resultsQueue, SkiersApi skiersApi) {
+    this.queue = queue;
+    this.rate = rate;
+    this.resultsQueue = resultsQueue;
+    this.skiersApi = skiersApi;
+  }
+
+  @Override
+  public void run() {
+    long startNanos = System.nanoTime();
+    long startMillis = System.currentTimeMillis();
+    double offsetNanos = 0;  // intended send time of the next request, from the start
+    int sent = 0;
+    try {
+      while (true) {
+        LiftRideEvent event = queue.take();
+        if (event.isPoisonPill()) {  // End if a poisonPill found
+          break;
+        }
+        long intended = startNanos + (long) offsetNanos;
+        long wait;
+        while ((wait = intended - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(wait);
+        }
+        // behind the schedule, send right away and let the latency show it
+        maxLagNanos = Math.max(maxLagNanos, -wait);
+        send(event, 1, intended, startMillis + TimeUnit.NANOSECONDS.toMillis((long) offsetNanos));
+        sent++;
+        offsetNanos += TimeUnit.SECONDS.toNanos(1) / rate.perSecond(offsetNanos / 1e9);
+      }
+      scheduleNanos = (long) offsetNanos;
+      completed.acquire(sent);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (latencies) {
+      resultsQueue.add(new ConsumerResult(numOfSuccess.get(), numOfFailures.get(), latencies));
+    }
+  }
+
+  /**
+   * Most the sends fell behind their intended time, in milliseconds
+   */
+  public long getMaxLagMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxLagNanos);
+  }
+
+  /**
+   * Length of the schedule the requests were sent on, in milliseconds
+   */
+  public long getScheduleMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(scheduleNanos);
+  }
+
+  private void send(LiftRideEvent event, int attempt, long intendedNanos, long intendedMillis) {
+    try {
+      skiersApi.writeNewLiftRideAsync(event.getBody(), event.getResortID(), event.getSeasonID(),
+          event.getDayID(), event.getSkierID(), new ApiCallback<Void>() {
+            @Override
+            public void onSuccess(Void result, int statusCode,
+                Map<String, List<String>> responseHeaders) {
+              if (statusCode == 201) {
+                numOfSuccess.incrementAndGet();
+              } else {
+                numOfFailures.incrementAndGet();
+              }
+              complete(intendedNanos, intendedMillis, statusCode, attempt);
+            }
+
+            @Override
+            public void onFailure(ApiException e, int statusCode,
+                Map<String, List<String>> responseHeaders) {
+              // status 0 is a transport failure (refused, reset, timed out), retried like an
+              // error response as Consumer.sendRequest does
+              if (statusCode == 0) {
+                System.err.println("Error sending lift ride: " + e.getMessage() + " Attempt: "
+                    + attempt);
+              } else if (statusCode >= 400 && statusCode < 600) {
+                System.out.println("Received Error Code: " + statusCode + "Attempt: " + attempt);
+              }
+              if ((statusCode == 0 || statusCode >= 400 && statusCode < 600)
+                  && attempt < MAX_RETRIES) {
+                send(event, attempt + 1, intendedNanos, intendedMillis);
+                return;
+              }
+              numOfFailures.incrementAndGet();   // record the failed case
+              complete(intendedNanos, intendedMillis, statusCode, attempt);
+            }
+
+            @Override
+            public void onUploadProgress(long bytesWritten, long contentLength, boolean done) {
+            }
+
+            @Override
+            public void onDownloadProgress(long bytesRead, long contentLength, boolean done) {
+            }
+          });
+    } catch (ApiException e) {
+      // the request could not be built, retrying would not help
+      System.err.println("Exception when calling SkiersApi#writeNewLiftRide");
+      e.printStackTrace();
+      numOfFailures.incrementAndGet();
+      complete(intendedNanos, intendedMillis, 0, attempt);
+    }
+  }
+
+  private void complete(long intendedNanos, long intendedMillis, int statusCode, int attempt) {
+    long latencyNanos = System.nanoTime() - intendedNanos;
+    synchronized (latencies) {
+      latencies.record(intendedMillis, latencyNanos, statusCode, attempt, 0);
+    }
+    completed.release();
+  }
+}
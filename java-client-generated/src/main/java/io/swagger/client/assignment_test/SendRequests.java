@@ -3,16 +3,20 @@ package io.swagger.client.assignment_test;
 import io.swagger.client.assignment1_p2.CSVHandler;
 import io.swagger.client.assignment1_p2.Consumer;
 import io.swagger.client.assignment1_p2.Producer;
+import io.swagger.client.assignment1_p2.SharedApiClient;
 import io.swagger.client.assignment_model.ConsumerResult;
 import io.swagger.client.assignment_model.LiftRideEvent;
-import io.swagger.client.assignment_model.RequestLog;
+import io.swagger.client.assignment_model.LatencyRecorder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 public class SendRequests {
@@ -24,6 +28,18 @@ public class SendRequests {
   public static final int PHASE_NUM_REQUEST_PER_THREAD =
       TOTAL_NUM_EVENTS - (INITIAL_NUM_CONSUMERS * INITIAL_NUM_REQUEST_PER_THREAD);
   public static final int QUEUE_CAPACITY = 1000;
+  // requests kept in flight by the async driver ("async [window]" on the command line)
+  static final String ASYNC_MODE = "async";
+  static final int DEFAULT_ASYNC_WINDOW = 256;
+  // "virtual [phaseOne] [phaseTwo,phaseTwo,...]" runs the two phases on virtual threads, once
+  // per phase two size, to sweep the concurrency
+  static final String VIRTUAL_MODE = "virtual";
+  // "open fixed <rate>", "open step <start,increment,stepSecs>" or "open ramp <from,to,secs>"
+  // sends on a schedule instead of waiting for responses
+  static final String OPEN_LOOP_MODE = "open";
+  // -DmaxConnections=N caps the shared client's pool, the run's concurrency by default
+  static final String MAX_CONNECTIONS_PROPERTY = "maxConnections";
+  public static SharedApiClient apiClient;
   public static CountDownLatch firstDoneLatch = new CountDownLatch(1);
   public static List<Thread> consumerThreads = new ArrayList<>();
   public static ConcurrentLinkedQueue<ConsumerResult> resultsQueue = new ConcurrentLinkedQueue<>();
@@ -32,22 +48,155 @@ public class SendRequests {
   public static void createThread(int numThreads, int numRequests) {
     IntStream.range(0, numThreads).forEach(i -> {
       Thread cThread = new Thread(
-          new Consumer(queue, i, numRequests, resultsQueue, firstDoneLatch)
+          new Consumer(queue, i, numRequests, resultsQueue, firstDoneLatch, apiClient.skiersApi())
       );
       cThread.start();
       consumerThreads.add(cThread);
     });
   }
 
+  /**
+   * Send every event from one thread with AsyncConsumer instead of the two phases of blocking
+   * consumers
+   */
+  private static void runAsync(int window) throws InterruptedException {
+    apiClient = sharedApiClient(window);
+    long start = System.currentTimeMillis();  // Start time
+    Thread producerThread = new Thread(new Producer(queue, TOTAL_NUM_EVENTS));
+    producerThread.start();
+    Thread driverThread = new Thread(new AsyncConsumer(queue, window, resultsQueue,
+        apiClient.skiersApi()));
+    driverThread.start();
+    producerThread.join();
+    queue.put(LiftRideEvent.poisonPill());
+    driverThread.join();
+    long end = System.currentTimeMillis();  // End time
+    System.out.printf("%nAsync driver with %d requests in flight%n", window);
+    summarizeResult(end, start);
+    apiClient.close();
+  }
+
+  /**
+   * Send every event at the given arrival rate from one OpenLoopConsumer, response times are
+   * measured from the intended send times
+   */
+  private static void runOpenLoop(ArrivalRate rate) throws InterruptedException {
+    apiClient = sharedApiClient(INITIAL_NUM_CONSUMERS + PHASE_TWO_NUM_CONSUMERS);
+    long start = System.currentTimeMillis();  // Start time
+    Thread producerThread = new Thread(new Producer(queue, TOTAL_NUM_EVENTS));
+    producerThread.start();
+    OpenLoopConsumer driver = new OpenLoopConsumer(queue, rate, resultsQueue,
+        apiClient.skiersApi());
+    Thread driverThread = new Thread(driver);
+    driverThread.start();
+    producerThread.join();
+    queue.put(LiftRideEvent.poisonPill());
+    driverThread.join();
+    long end = System.currentTimeMillis();  // End time
+    System.out.printf("%nOpen loop: %d requests scheduled over %d ms, sends fell behind by up to"
+        + " %d ms%n", TOTAL_NUM_EVENTS, driver.getScheduleMillis(), driver.getMaxLagMillis());
+    System.out.println("Response times are measured from the intended send times");
+    summarizeResult(end, start);
+    apiClient.close();
+  }
+
+  /**
+   * Run the two phases on virtual threads once per phase two size and report the throughput
+   * and p99 of each, to find where the server stops scaling with concurrency. The events are
+   * split exactly between the consumers, so no poison pills are needed.
+   */
+  private static void runVirtual(int phaseOne, List<Integer> phaseTwoSizes)
+      throws InterruptedException {
+    List<String> report = new ArrayList<>();
+    for (int phaseTwo : phaseTwoSizes) {
+      firstDoneLatch = new CountDownLatch(1);
+      resultsQueue = new ConcurrentLinkedQueue<>();
+      queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+      apiClient = sharedApiClient(phaseOne + phaseTwo);
+      // phase one sends at most half of the events
+      int phaseOneRequests = Math.max(1,
+          Math.min(INITIAL_NUM_REQUEST_PER_THREAD, TOTAL_NUM_EVENTS / (2 * phaseOne)));
+      int remaining = TOTAL_NUM_EVENTS - phaseOne * phaseOneRequests;
+
+      long start = System.currentTimeMillis();  // Start time
+      Thread producerThread = new Thread(new Producer(queue, TOTAL_NUM_EVENTS));
+      producerThread.start();
+      ExecutorService executor = consumerExecutor();
+      IntStream.range(0, phaseOne).forEach(i -> executor.execute(
+          new Consumer(queue, i, phaseOneRequests, resultsQueue, firstDoneLatch,
+              apiClient.skiersApi())));
+      firstDoneLatch.await();
+      IntStream.range(0, phaseTwo).forEach(i -> {
+        int requests = remaining / phaseTwo + (i < remaining % phaseTwo ? 1 : 0);
+        executor.execute(
+            new Consumer(queue, phaseOne + i, requests, resultsQueue, firstDoneLatch,
+                apiClient.skiersApi()));
+      });
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      producerThread.join();
+      long wallTime = System.currentTimeMillis() - start;
+
+      int failures = 0;
+      List<LatencyRecorder> recorders = new ArrayList<>();
+      for (ConsumerResult result : resultsQueue) {
+        failures += result.getNumOfFailures();
+        recorders.add(result.getLatencies());
+      }
+      double p99 = LatencyRecorder.merge(recorders).percentileMicros(99) / 1000.0;
+      String line = String.format("%6d + %6d consumers : %10.2f requests/second, p99 %8.2f ms,"
+              + " %d failures, %d sockets opened", phaseOne, phaseTwo,
+          TOTAL_NUM_EVENTS / (wallTime / 1000.0), p99, failures, apiClient.getSocketsOpened());
+      System.out.println(line);
+      report.add(line);
+      // the next size gets a client of its own, this one's connections would linger
+      apiClient.close();
+    }
+    System.out.println("\nConcurrency sweep on virtual threads:");
+    report.forEach(System.out::println);
+  }
+
+  /**
+   * One client for all consumers of a run, pooling as many connections as they send requests
+   * concurrently unless -DmaxConnections says otherwise (5 is OkHttp's default)
+   */
+  private static SharedApiClient sharedApiClient(int concurrency) {
+    return new SharedApiClient(Consumer.BASE_URL,
+        Integer.getInteger(MAX_CONNECTIONS_PROPERTY, concurrency));
+  }
+
+  /**
+   * One virtual thread per consumer, looked up reflectively as this module compiles for
+   * Java 8; a cached pool of platform threads before Java 21
+   */
+  private static ExecutorService consumerExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    } catch (ReflectiveOperationException e) {
+      System.err.println("Virtual threads need Java 21+, using platform threads");
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  private static List<Integer> parseSizes(String sizes) {
+    List<Integer> result = new ArrayList<>();
+    for (String size : sizes.split(",")) {
+      result.add(Integer.parseInt(size.trim()));
+    }
+    return result;
+  }
+
   private static void summarizeResult(Long end, Long start) {
     int totalFailures = 0;
     int totalSuccess = 0;
-    List<RequestLog> allLogs = new CopyOnWriteArrayList<>();
+    List<LatencyRecorder> recorders = new ArrayList<>();
     for (ConsumerResult result : resultsQueue) {
       totalSuccess += result.getNumOfSuccess();
       totalFailures += result.getNumOfFailures();
-      allLogs.addAll(result.getLogs());
+      recorders.add(result.getLatencies());
     }
+    LatencyRecorder allLogs = LatencyRecorder.merge(recorders);
 
     long wallTime = (end - start);
     System.out.println("\nAll done. Main thread exiting：");
@@ -57,6 +206,7 @@ public class SendRequests {
     System.out.printf("Total run time                  :  %d%n", wallTime);
     System.out.printf("Total throughput per second     :  %.2f requests/second%n",
         (TOTAL_NUM_EVENTS / (wallTime / 1000.0)));
+    System.out.printf("HTTP connections                :  %s%n", apiClient);
 
     // Write to CSV
     CSVHandler.writeLogsToCSV(allLogs, "java-client-generated/request_logs.csv");
@@ -65,7 +215,22 @@ public class SendRequests {
   }
 
   public static void main(String[] args) throws InterruptedException {
+    if (args.length > 0 && args[0].equals(ASYNC_MODE)) {
+      runAsync(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ASYNC_WINDOW);
+      return;
+    }
+    if (args.length > 2 && args[0].equals(OPEN_LOOP_MODE)) {
+      runOpenLoop(ArrivalRate.parse(args[1], args[2]));
+      return;
+    }
+    if (args.length > 0 && args[0].equals(VIRTUAL_MODE)) {
+      runVirtual(args.length > 1 ? Integer.parseInt(args[1]) : INITIAL_NUM_CONSUMERS,
+          args.length > 2 ? parseSizes(args[2])
+              : Collections.singletonList(PHASE_TWO_NUM_CONSUMERS));
+      return;
+    }
 
+    apiClient = sharedApiClient(INITIAL_NUM_CONSUMERS + PHASE_TWO_NUM_CONSUMERS);
     long start = System.currentTimeMillis();  // Start time
 
     // Start the producer thread
@@ -101,5 +266,6 @@ public class SendRequests {
     long end = System.currentTimeMillis();  // End time
     // Summarize the result
     summarizeResult(end, start);
+    apiClient.close();
   }
 }
@@ -0,0 +1,83 @@
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acknowledges the deliveries of one channel in batches.
+ * Delivery tags on a channel increase by one per delivery and the channel's callbacks run in
+ * order, so a single basicAck(tag, multiple=true) settles every delivery up to tag. Acks go
+ * out every ackBatch deliveries, and a timer flushes a partial batch once it is ackDelayMillis
+ * old so a trickle of messages is not held back. A failed delivery is nacked on its own,
+ * after the successes before it are acked, so nothing else is redelivered.
+ */
+public class BatchAcker {
+
+  private final Channel channel;
+  private final int ackBatch;
+  private final ScheduledFuture<?> flushTask;
+  // highest processed delivery tag, and highest tag settled with the broker
+  private long lastTag;
+  private long lastSettledTag;
+
+  public BatchAcker(Channel channel, int ackBatch, int ackDelayMillis,
+      ScheduledExecutorService scheduler) {
+    this.channel = channel;
+    this.ackBatch = ackBatch;
+    this.flushTask = ackBatch == 1 ? null : scheduler.scheduleWithFixedDelay(
+        this::flushQuietly, ackDelayMillis, ackDelayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * The delivery was processed
+   */
+  public synchronized void ack(long deliveryTag) throws IOException {
+    lastTag = deliveryTag;
+    if (lastTag - lastSettledTag >= ackBatch) {
+      flush();
+    }
+  }
+
+  /**
+   * The delivery could not be processed: ack what came before it and nack it alone
+   *
+   * @param requeue false for messages that will never succeed (e.g. malformed)
+   */
+  public synchronized void nack(long deliveryTag, boolean requeue) throws IOException {
+    flush();
+    channel.basicNack(deliveryTag, false, requeue);
+    lastTag = deliveryTag;
+    lastSettledTag = deliveryTag;
+  }
+
+  /**
+   * Ack every processed delivery not acked yet
+   */
+  public synchronized void flush() throws IOException {
+    if (lastTag > lastSettledTag) {
+      channel.basicAck(lastTag, true);
+      lastSettledTag = lastTag;
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      if (channel.isOpen()) {
+        flush();
+      }
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Error flushing acks: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Stop the timer and ack what is left
+   */
+  public void close() {
+    if (flushTask != null) {
+      flushTask.cancel(false);
+    }
+    flushQuietly();
+  }
+}
@@ -0,0 +1,232 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Consumer settings, read from system properties (java -Dprefetch=500 -jar ...) with the
+ * defaults below when a property is absent.
+ */
+public class ConsumerConfig {
+
+  // unacknowledged messages the broker may push to each channel
+  private static final int DEFAULT_PREFETCH = 200;
+  // ack with multiple=true every ackBatch messages, or ackDelayMillis after the first unacked one
+  private static final int DEFAULT_ACK_BATCH = 50;
+  private static final int DEFAULT_ACK_DELAY_MILLIS = 50;
+  // consumer channels, each with its own prefetch window
+  private static final int DEFAULT_CHANNELS = 64;
+  // threads running the delivery callbacks, channels beyond that share them
+  private static final int DEFAULT_CONSUMER_THREADS = 2 * Runtime.getRuntime().availableProcessors();
+  // single-writer shards rides are routed to by skierID, 0 to record on the callback threads
+  private static final int DEFAULT_SHARDS = 0;
+  private static final int DEFAULT_SHARD_QUEUE_CAPACITY = 8192;
+  // skier partitions the servlet publishes to, 0 for the single rpc_queue
+  private static final int DEFAULT_PARTITIONS = 0;
+  // event log segment size, and how often appended rides are forced to disk (and acked)
+  private static final int DEFAULT_LOG_SEGMENT_MB = 64;
+  private static final int DEFAULT_FSYNC_MILLIS = 10;
+  // seconds between snapshots of the store when logging, 0 for none
+  private static final int DEFAULT_SNAPSHOT_SECS = 60;
+  // port of the query server the servlets read aggregates from, 0 for none; it has no auth,
+  // so it is off unless asked for and listens on loopback unless given another address
+  private static final int DEFAULT_QUERY_PORT = 0;
+  private static final String DEFAULT_QUERY_HOST = "localhost";
+  private static final int DEFAULT_QUERY_THREADS = 2 * Runtime.getRuntime().availableProcessors();
+
+  private final int prefetch;
+  private final int ackBatch;
+  private final int ackDelayMillis;
+  private final int channels;
+  private final int consumerThreads;
+  // run callbacks on virtual threads (Java 21+), consumerThreads is then ignored
+  private final boolean virtualThreads;
+  private final int shards;
+  private final int shardQueueCapacity;
+  private final int partitions;
+  // the partitions this consumer subscribes to
+  private final List<Integer> subscribedPartitions;
+  // directory of the durable event log, null to ack without logging
+  private final String logDir;
+  private final int logSegmentMB;
+  private final int fsyncMillis;
+  private final int snapshotSecs;
+  // vertical per liftID as "200,300,...", null for liftID x 10
+  private final String liftVerticals;
+  private final String queryHost;
+  private final int queryPort;
+  private final int queryThreads;
+
+  public ConsumerConfig(int prefetch, int ackBatch, int ackDelayMillis, int channels,
+      int consumerThreads, boolean virtualThreads, int shards, int shardQueueCapacity,
+      int partitions, List<Integer> subscribedPartitions, String logDir, int logSegmentMB,
+      int fsyncMillis, int snapshotSecs, String liftVerticals, String queryHost, int queryPort,
+      int queryThreads) {
+    if (prefetch < 1 || ackBatch < 1 || ackDelayMillis < 1 || channels < 1
+        || consumerThreads < 1 || shardQueueCapacity < 1 || logSegmentMB < 1
+        || fsyncMillis < 1 || queryThreads < 1) {
+      throw new IllegalArgumentException("prefetch, ackBatch, ackDelayMillis, channels, "
+          + "consumerThreads, shardQueueCapacity, logSegmentMB, fsyncMillis and queryThreads "
+          + "must be positive");
+    }
+    if (shards < 0 || partitions < 0 || snapshotSecs < 0 || queryPort < 0) {
+      throw new IllegalArgumentException(
+          "shards, partitions, snapshotSecs and queryPort must not be negative");
+    }
+    for (int partition : subscribedPartitions) {
+      if (partition < 0 || partition >= partitions) {
+        throw new IllegalArgumentException("No partition " + partition + " of " + partitions);
+      }
+    }
+    this.prefetch = prefetch;
+    // acks held back beyond the prefetch would stall the channel until the delay expires
+    this.ackBatch = Math.min(ackBatch, prefetch);
+    this.ackDelayMillis = ackDelayMillis;
+    this.channels = channels;
+    this.consumerThreads = consumerThreads;
+    this.virtualThreads = virtualThreads;
+    this.shards = shards;
+    this.shardQueueCapacity = shardQueueCapacity;
+    this.partitions = partitions;
+    this.subscribedPartitions = Collections.unmodifiableList(new ArrayList<>(subscribedPartitions));
+    this.logDir = logDir == null || logDir.trim().isEmpty() ? null : logDir.trim();
+    this.logSegmentMB = logSegmentMB;
+    this.fsyncMillis = fsyncMillis;
+    this.snapshotSecs = snapshotSecs;
+    this.liftVerticals = liftVerticals == null || liftVerticals.trim().isEmpty() ? null
+        : liftVerticals.trim();
+    this.queryHost = queryHost == null || queryHost.trim().isEmpty() ? DEFAULT_QUERY_HOST
+        : queryHost.trim();
+    this.queryPort = queryPort;
+    this.queryThreads = queryThreads;
+  }
+
+  public static ConsumerConfig fromSystemProperties() {
+    int partitions = Integer.getInteger("partitions", DEFAULT_PARTITIONS);
+    return new ConsumerConfig(Integer.getInteger("prefetch", DEFAULT_PREFETCH),
+        Integer.getInteger("ackBatch", DEFAULT_ACK_BATCH),
+        Integer.getInteger("ackDelayMillis", DEFAULT_ACK_DELAY_MILLIS),
+        Integer.getInteger("channels", DEFAULT_CHANNELS),
+        Integer.getInteger("consumerThreads", DEFAULT_CONSUMER_THREADS),
+        Boolean.getBoolean("virtualThreads"),
+        Integer.getInteger("shards", DEFAULT_SHARDS),
+        Integer.getInteger("shardQueueCapacity", DEFAULT_SHARD_QUEUE_CAPACITY),
+        partitions, parsePartitions(System.getProperty("subscribe"), partitions),
+        System.getProperty("logDir"),
+        Integer.getInteger("logSegmentMB", DEFAULT_LOG_SEGMENT_MB),
+        Integer.getInteger("fsyncMillis", DEFAULT_FSYNC_MILLIS),
+        Integer.getInteger("snapshotSecs", DEFAULT_SNAPSHOT_SECS),
+        System.getProperty("liftVerticals"),
+        System.getProperty("queryHost"),
+        Integer.getInteger("queryPort", DEFAULT_QUERY_PORT),
+        Integer.getInteger("queryThreads", DEFAULT_QUERY_THREADS));
+  }
+
+  /**
+   * Parse a partition list like "0-3,6"; null or empty means every partition
+   */
+  static List<Integer> parsePartitions(String spec, int partitions) {
+    List<Integer> result = new ArrayList<>();
+    if (spec == null || spec.trim().isEmpty()) {
+      for (int i = 0; i < partitions; i++) {
+        result.add(i);
+      }
+      return result;
+    }
+    for (String part : spec.split(",")) {
+      String range = part.trim();
+      int dash = range.indexOf('-');
+      int from = Integer.parseInt(dash < 0 ? range : range.substring(0, dash).trim());
+      int to = dash < 0 ? from : Integer.parseInt(range.substring(dash + 1).trim());
+      for (int i = from; i <= to; i++) {
+        if (!result.contains(i)) {
+          result.add(i);
+        }
+      }
+    }
+    return result;
+  }
+
+  public int getPrefetch() {
+    return prefetch;
+  }
+
+  public int getAckBatch() {
+    return ackBatch;
+  }
+
+  public int getAckDelayMillis() {
+    return ackDelayMillis;
+  }
+
+  public int getChannels() {
+    return channels;
+  }
+
+  public int getConsumerThreads() {
+    return consumerThreads;
+  }
+
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  public int getShards() {
+    return shards;
+  }
+
+  public int getShardQueueCapacity() {
+    return shardQueueCapacity;
+  }
+
+  public int getPartitions() {
+    return partitions;
+  }
+
+  public List<Integer> getSubscribedPartitions() {
+    return subscribedPartitions;
+  }
+
+  public String getLogDir() {
+    return logDir;
+  }
+
+  public int getLogSegmentMB() {
+    return logSegmentMB;
+  }
+
+  public int getFsyncMillis() {
+    return fsyncMillis;
+  }
+
+  public int getSnapshotSecs() {
+    return snapshotSecs;
+  }
+
+  public String getLiftVerticals() {
+    return liftVerticals;
+  }
+
+  public String getQueryHost() {
+    return queryHost;
+  }
+
+  public int getQueryPort() {
+    return queryPort;
+  }
+
+  public int getQueryThreads() {
+    return queryThreads;
+  }
+
+  @Override
+  public String toString() {
+    return "prefetch=" + prefetch + " ackBatch=" + ackBatch + " ackDelayMillis=" + ackDelayMillis
+        + " channels=" + channels + " consumerThreads="
+        + (virtualThreads ? "virtual" : String.valueOf(consumerThreads))
+        + " shards=" + shards
+        + (queryPort > 0 ? " query=" + queryHost + ":" + queryPort : "")
+        + (partitions > 0 ? " partitions=" + subscribedPartitions + " of " + partitions : "")
+        + (logDir != null ? " logDir=" + logDir + " logSegmentMB=" + logSegmentMB
+            + " fsyncMillis=" + fsyncMillis + " snapshotSecs=" + snapshotSecs : "");
+  }
+}
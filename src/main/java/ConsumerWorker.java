@@ -1,71 +1,243 @@
-import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
+import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.DeliverCallback;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import model.LiftRideEvent;
+import model.LiftRideEventCodec;
+import model.RidePartitions;
+import store.EventLog;
+import store.RideRecorder;
 
-public class ConsumerWorker implements Runnable {
+/**
+ * One consumer channel on the queue (or on one partition queue). start() registers the delivery callback, which then
+ * runs on the connection's consumer executor; stop() cancels the consumer, waits for the
+ * deliveries in progress, acks them and closes the channel.
+ * With an EventLog the rides are appended to it before they are recorded, and acks and nacks
+ * go through the log so that a message is acked only once its rides are on disk.
+ * With a PauseGate the callbacks pass through it, so snapshots can hold them back.
+ */
+public class ConsumerWorker {
 
   private Connection connection;
-  private static final Gson GSON = new Gson();
 
   private static final String QUEUE_NAME = "rpc_queue";
-  private Map<Integer, CopyOnWriteArrayList<LiftRideEvent>> records;
-  private static AtomicInteger count;
+  private static final long IDLE_POLL_MILLIS = 10;
+  // the store, or the shards in front of it
+  private final RideRecorder recorder;
+  // null when rides are not logged
+  private final EventLog log;
+  // null when nothing pauses the callbacks
+  private final PauseGate gate;
+  private final ConsumerConfig config;
+  private final String queueName;
+  // runs the ack flush timers
+  private final ScheduledExecutorService scheduler;
+  // deliveries whose callback is running
+  private final AtomicInteger inFlight = new AtomicInteger(0);
+  private Channel channel;
+  private BatchAcker acker;
+  private String consumerTag;
 
 
-  public ConsumerWorker(Connection connection,
-      Map<Integer, CopyOnWriteArrayList<LiftRideEvent>> records, AtomicInteger count) {
+  public ConsumerWorker(Connection connection, String queueName, RideRecorder recorder,
+      ConsumerConfig config, ScheduledExecutorService scheduler) {
+    this(connection, queueName, recorder, null, null, config, scheduler);
+  }
+
+  public ConsumerWorker(Connection connection, String queueName, RideRecorder recorder,
+      EventLog log, PauseGate gate, ConsumerConfig config, ScheduledExecutorService scheduler) {
     this.connection = connection;
-    this.records = records;
-    this.count = count;
+    this.queueName = queueName;
+    this.recorder = recorder;
+    this.log = log;
+    this.gate = gate;
+    if (gate != null) {
+      gate.register(inFlight);
+    }
+    this.config = config;
+    this.scheduler = scheduler;
   }
 
-  @Override
-  public void run() {
-    try {
-      Channel channel = connection.createChannel();
-      channel.queueDeclare(QUEUE_NAME, false, false, false, null);
-      channel.queuePurge(QUEUE_NAME);
+  /**
+   * Declare the queue (once, before any worker starts) and drop what is left in it.
+   * When partitioned, the same for the exchange and the subscribed partition queues.
+   * A consumer with an event log resumes where it stopped, so its queues are not purged.
+   */
+  public static void declareQueue(Connection connection, ConsumerConfig config)
+      throws IOException, TimeoutException {
+    boolean purge = config.getLogDir() == null;
+    try (Channel channel = connection.createChannel()) {
+      if (config.getPartitions() == 0) {
+        channel.queueDeclare(QUEUE_NAME, false, false, false, null);
+        if (purge) {
+          channel.queuePurge(QUEUE_NAME);
+        }
+        return;
+      }
+      RidePartitions.declare(channel, config.getPartitions(), config.getSubscribedPartitions());
+      for (int partition : config.getSubscribedPartitions()) {
+        if (purge) {
+          channel.queuePurge(RidePartitions.queueName(partition));
+        }
+      }
+    }
+  }
 
-      channel.basicQos(1);
+  /**
+   * Queues the workers consume from, worker i takes the i-th modulo their count
+   */
+  public static String queueFor(int worker, ConsumerConfig config) {
+    if (config.getPartitions() == 0) {
+      return QUEUE_NAME;
+    }
+    List<Integer> subscribed = config.getSubscribedPartitions();
+    return RidePartitions.queueName(subscribed.get(worker % subscribed.size()));
+  }
+
+  public void start() throws IOException {
+    channel = connection.createChannel();
+    channel.basicQos(config.getPrefetch());
+    acker = new BatchAcker(channel, config.getAckBatch(), config.getAckDelayMillis(), scheduler);
+    channel.addShutdownListener(cause -> acker.close());
 
 //      System.out.println(" [*] Waiting for messages. To exit press CTRL+C");
 
-      DeliverCallback deliverCallback = (consumerTag, delivery) -> {
-        String message = new String(delivery.getBody(), StandardCharsets.UTF_8);
+    DeliverCallback deliverCallback = (consumerTag, delivery) -> {
+      long deliveryTag = delivery.getEnvelope().getDeliveryTag();
+      if (gate == null) {
+        inFlight.incrementAndGet();
+      } else {
         try {
-          LiftRideEvent liftRideEvent = GSON.fromJson(message, LiftRideEvent.class);
-          Integer skierID = liftRideEvent.getSkierID();
-          records.computeIfAbsent(skierID, k -> new CopyOnWriteArrayList<>()).add(liftRideEvent);
-          count.incrementAndGet();
+          gate.enter(inFlight);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          nack(deliveryTag, true);
+          return;
+        }
+      }
+      try {
+        handle(delivery.getProperties(), deliveryTag, delivery.getBody());
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    };
 
+    consumerTag = channel.basicConsume(queueName, false, deliverCallback, tag -> {
+    });
+  }
 
-//          Thread.sleep(10);
-//        } catch (InterruptedException e) {
-//          throw new RuntimeException(e);
-        } catch (JsonSyntaxException e) {
-          throw new RuntimeException(e);
-        }
+  private void handle(AMQP.BasicProperties props, long deliveryTag, byte[] body)
+      throws IOException {
+    try {
+      // content-type picks JSON or binary, the type marks batched messages
+      List<LiftRideEvent> events = LiftRideEventCodec.decode(props.getContentType(),
+          LiftRideEventCodec.BATCH_TYPE.equals(props.getType()), body);
+      // a dropped message must leave nothing in the log for replay to add
+      for (LiftRideEvent liftRideEvent : events) {
+        recorder.validate(liftRideEvent);
+      }
+      if (log != null) {
+        log.append(events, null);
+      }
+      for (LiftRideEvent liftRideEvent : events) {
+        record(liftRideEvent);
+      }
+    } catch (JsonSyntaxException | IllegalArgumentException e) {
+      // malformed or out of range, redelivering it would fail the same way
+      System.err.println("Dropping unprocessable message: " + e.getMessage());
+      nack(deliveryTag, false);
+      return;
+    } catch (IOException e) {
+      System.err.println("Error appending to the event log, requeueing message: "
+          + e.getMessage());
+      nack(deliveryTag, true);
+      return;
+    } catch (RuntimeException e) {
+      System.err.println("Error processing message, requeueing it: " + e.getMessage());
+      nack(deliveryTag, true);
+      return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      nack(deliveryTag, true);
+      return;
+    }
 //        System.out.println(" Count :" + count.toString() + " [x] Received '" + message + "'");
-        channel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
-      };
+    ack(deliveryTag);
+  }
 
-      channel.basicConsume(QUEUE_NAME, false, deliverCallback, consumerTag -> {
-      });
-    } catch (IOException e) {
-      System.err.println("❌ Failed to connect to RabbitMQ: " + e.getMessage());
-      throw new RuntimeException(e);
+  /**
+   * Ack now, or once the rides appended so far are on disk
+   */
+  private void ack(long deliveryTag) throws IOException {
+    if (log == null) {
+      acker.ack(deliveryTag);
+      return;
+    }
+    log.append(Collections.emptyList(), () -> {
+      try {
+        acker.ack(deliveryTag);
+      } catch (IOException e) {
+        System.err.println("Error acking message: " + e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Nack in turn with the acks still waiting for the log, the nack settles those first
+   */
+  private void nack(long deliveryTag, boolean requeue) throws IOException {
+    if (log == null) {
+      acker.nack(deliveryTag, requeue);
+      return;
+    }
+    log.append(Collections.emptyList(), () -> {
+      try {
+        acker.nack(deliveryTag, requeue);
+      } catch (IOException e) {
+        System.err.println("Error nacking message: " + e.getMessage());
+      }
+    });
+  }
+
+  /**
+   * Stop consuming: no new deliveries after the cancel, the ones in progress are given until
+   * the deadline (System.nanoTime) to finish, then everything processed is acked. Deliveries
+   * that were prefetched but not processed go back to the queue when the channel closes.
+   */
+  public void stop(long deadlineNanos) throws InterruptedException {
+    if (channel == null || !channel.isOpen()) {
+      return;
     }
+    try {
+      channel.basicCancel(consumerTag);
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Error cancelling consumer: " + e.getMessage());
+    }
+    while (inFlight.get() > 0 && System.nanoTime() < deadlineNanos) {
+      TimeUnit.MILLISECONDS.sleep(IDLE_POLL_MILLIS);
+    }
+    if (log != null) {
+      // run the acks still waiting for the flusher
+      log.sync();
+    }
+    try {
+      acker.flush();
+      channel.close();
+    } catch (IOException | TimeoutException | RuntimeException e) {
+      System.err.println("Error closing consumer channel: " + e.getMessage());
+    }
+  }
+
+  private void record(LiftRideEvent liftRideEvent) throws InterruptedException {
+    recorder.record(liftRideEvent);
   }
 
 }
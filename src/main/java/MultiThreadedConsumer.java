@@ -1,48 +1,196 @@
-import com.google.gson.Gson;
-import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Executor;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.IntStream;
-import model.LiftRideEvent;
+import store.EventLog;
+import store.RideRecorder;
+import store.ShardedRideRecorder;
+import store.SkierRideStore;
+import store.UniqueSkierIndex;
+import store.VerticalTotals;
 
 public class MultiThreadedConsumer {
   private static ConnectionFactory factory;
 
-  private static final Integer NUM_WORKS = 1000;
+  // skierIDs the server accepts are 1..100000
+  private static final int MAX_SKIER_ID = 100000;
+  // liftIDs the server accepts are 1..40
+  private static final int MAX_LIFT_ID = 40;
+  // how long shutdown waits for the deliveries in progress
+  private static final int SHUTDOWN_WAIT_SECS = 10;
 //  private static final String HOST = "localhost";
   private static final String HOST = "172.31.31.186"; //private
 //  private static final String HOST = "35.91.180.143"; //public
-  private static Map<Integer, CopyOnWriteArrayList<LiftRideEvent>> records;;
-  private static AtomicInteger count = new AtomicInteger(0);
+  private static SkierRideStore records;
+  // unique skiers per resort and day, kept up to date by the store
+  private static UniqueSkierIndex uniqueSkiers;
+  // vertical per skier and day / season, kept up to date by the store
+  private static VerticalTotals verticals;
 
   public static void main(String[] args) throws IOException, TimeoutException, InterruptedException {
-    records = new ConcurrentHashMap<>();
+    records = new SkierRideStore(MAX_SKIER_ID);
+    uniqueSkiers = new UniqueSkierIndex(MAX_SKIER_ID);
+    records.addIndex(uniqueSkiers);
+    ConsumerConfig config = ConsumerConfig.fromSystemProperties();
+    System.out.println("Consumer settings: " + config);
+    verticals = config.getLiftVerticals() == null ? VerticalTotals.liftIdTimesTen(MAX_LIFT_ID)
+        : VerticalTotals.fromList(config.getLiftVerticals());
+    records.addIndex(verticals);
+    RideRecorder recorder = config.getShards() > 0
+        ? new ShardedRideRecorder(records, config.getShards(), config.getShardQueueCapacity())
+        : records;
+    EventLog log = openLog(config);
+    PauseGate gate = log == null ? null : new PauseGate();
+    Snapshotter snapshotter = log == null ? null
+        : new Snapshotter(Paths.get(config.getLogDir()), records, recorder, log, gate);
+
     factory = new ConnectionFactory();
     factory.setHost(HOST);
     factory.setUsername("admin");
     factory.setPassword("admin");
 
-    Connection connection = factory.newConnection();
+    // delivery callbacks run on this executor rather than the client's default pool
+    ExecutorService consumerExecutor = consumerExecutor(config);
+    Connection connection = factory.newConnection(consumerExecutor);
     System.out.println("✅ Successfully connected to RabbitMQ");
+    ConsumerWorker.declareQueue(connection, config);
+
+    // flushes partial ack batches of every worker
+    ScheduledExecutorService ackScheduler = Executors.newSingleThreadScheduledExecutor(
+        daemonThreads("ack-flusher"));
+    // at least one channel per subscribed partition
+    int channels = Math.max(config.getChannels(), config.getSubscribedPartitions().size());
+    List<ConsumerWorker> workers = new ArrayList<>(channels);
+    for (int i = 0; i < channels; i++) {
+      ConsumerWorker worker = new ConsumerWorker(connection, ConsumerWorker.queueFor(i, config),
+          recorder, log, gate, config, ackScheduler);
+      worker.start();
+      workers.add(worker);
+    }
+    ScheduledExecutorService snapshotScheduler = null;
+    if (snapshotter != null && config.getSnapshotSecs() > 0) {
+      snapshotScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("snapshot"));
+      snapshotScheduler.scheduleWithFixedDelay(snapshotter::snapshot, config.getSnapshotSecs(),
+          config.getSnapshotSecs(), TimeUnit.SECONDS);
+    }
+    ScheduledExecutorService snapshots = snapshotScheduler;
+    QueryServer queryServer = null;
+    if (config.getQueryPort() > 0) {
+      queryServer = new QueryServer(config.getQueryHost(), config.getQueryPort(),
+          config.getQueryThreads(), verticals, uniqueSkiers, daemonThreads("query"));
+      queryServer.start();
+      System.out.println("Serving aggregates on " + queryServer.getAddress());
+    }
+    QueryServer queries = queryServer;
 
-    ExecutorService executorService = Executors.newFixedThreadPool(NUM_WORKS);
-    IntStream.range(0, NUM_WORKS).forEach(i -> {
-      executorService.submit(new ConsumerWorker(connection, records, count));
-    });
-    executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+    CountDownLatch stopped = new CountDownLatch(1);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        if (queries != null) {
+          queries.stop();
+        }
+        shutdown(workers, connection, consumerExecutor, ackScheduler, recorder, log,
+            snapshots, snapshotter);
+      } finally {
+        stopped.countDown();
+      }
+    }, "consumer-shutdown"));
+    stopped.await();
+  }
 
+  /**
+   * Stop the consumers, let the deliveries in progress finish and ack them, then close the
+   * connection and the executors; with an event log, take a last snapshot and close the log
+   */
+  private static void shutdown(List<ConsumerWorker> workers, Connection connection,
+      ExecutorService consumerExecutor, ScheduledExecutorService ackScheduler,
+      RideRecorder recorder, EventLog log, ScheduledExecutorService snapshots,
+      Snapshotter snapshotter) {
+    System.out.println("Shutting down " + workers.size() + " consumers");
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_WAIT_SECS);
+    try {
+      for (ConsumerWorker worker : workers) {
+        worker.stop(deadline);
+      }
+      if (connection.isOpen()) {
+        connection.close();
+      }
+      ackScheduler.shutdown();
+      consumerExecutor.shutdown();
+      if (!consumerExecutor.awaitTermination(SHUTDOWN_WAIT_SECS, TimeUnit.SECONDS)) {
+        consumerExecutor.shutdownNow();
+      }
+      recorder.close();
+      if (snapshots != null) {
+        snapshots.shutdown();
+        snapshots.awaitTermination(SHUTDOWN_WAIT_SECS, TimeUnit.SECONDS);
+      }
+      if (snapshotter != null) {
+        // the next start loads this instead of replaying the log
+        snapshotter.snapshot();
+      }
+      if (log != null) {
+        log.close();
+      }
+    } catch (IOException e) {
+      System.err.println("Error closing RabbitMQ connection: " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    System.out.println("Consumed " + recorder.recordedCount() + " lift rides, "
+        + records.totalRides() + " stored, " + uniqueSkiers.dayCount() + " resort days");
   }
 
+  /**
+   * Open the event log if logDir is set and restore the store from the latest snapshot and
+   * the log after it, so a restarted consumer picks up where it stopped
+   */
+  private static EventLog openLog(ConsumerConfig config) throws IOException {
+    if (config.getLogDir() == null) {
+      return null;
+    }
+    Path dir = Paths.get(config.getLogDir());
+    EventLog log = new EventLog(dir, config.getLogSegmentMB() * 1024L * 1024L,
+        config.getFsyncMillis());
+    Snapshotter.restore(dir, records, log);
+    return log;
+  }
 
+  /**
+   * A fixed pool of consumerThreads, or one virtual thread per task when asked for and the JVM
+   * has them (looked up reflectively, this module compiles for Java 11)
+   */
+  private static ExecutorService consumerExecutor(ConsumerConfig config) {
+    if (config.isVirtualThreads()) {
+      try {
+        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+            .invoke(null);
+      } catch (ReflectiveOperationException e) {
+        System.err.println("Virtual threads need Java 21+, using "
+            + config.getConsumerThreads() + " platform threads");
+      }
+    }
+    return Executors.newFixedThreadPool(config.getConsumerThreads(), daemonThreads("consumer"));
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger n = new AtomicInteger(0);
+    return r -> {
+      Thread t = new Thread(r, prefix + "-" + n.getAndIncrement());
+      t.setDaemon(true);
+      return t;
+    };
+  }
 
 }
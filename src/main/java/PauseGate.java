@@ -0,0 +1,61 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lets the snapshotter stop the delivery callbacks for a moment, to read the store and the
+ * log position at a point where every logged ride is recorded.
+ *
+ * Each worker counts its callbacks in and out of its own in-flight counter, which only that
+ * worker's callbacks touch, so passing the gate costs an uncontended atomic and a volatile
+ * read.
+ * pause() raises the flag and then waits for every counter to reach zero; a callback that
+ * finds the flag raised after counting itself in backs out and waits for resume().
+ */
+public class PauseGate {
+
+  private static final long POLL_MILLIS = 1;
+
+  private final List<AtomicInteger> counters = new CopyOnWriteArrayList<>();
+  private volatile boolean paused;
+
+  /**
+   * Add a worker's in-flight counter
+   */
+  public void register(AtomicInteger inFlight) {
+    counters.add(inFlight);
+  }
+
+  public void enter(AtomicInteger inFlight) throws InterruptedException {
+    while (true) {
+      inFlight.incrementAndGet();
+      if (!paused) {
+        return;
+      }
+      inFlight.decrementAndGet();
+      synchronized (this) {
+        while (paused) {
+          wait();
+        }
+      }
+    }
+  }
+
+  /**
+   * Hold back new callbacks and wait for the running ones to finish
+   */
+  public void pause() throws InterruptedException {
+    paused = true;
+    for (AtomicInteger inFlight : counters) {
+      while (inFlight.get() > 0) {
+        TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+      }
+    }
+  }
+
+  public synchronized void resume() {
+    paused = false;
+    notifyAll();
+  }
+}
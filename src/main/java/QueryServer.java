@@ -0,0 +1,183 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import store.UniqueSkierIndex;
+import store.VerticalTotals;
+
+/**
+ * HTTP endpoint the servlets read the consumer's aggregates from. Answers are plain text:
+ *
+ *   GET /day-vertical?skier=&resort=&season=&day=     total vertical, one number
+ *   GET /season-vertical?skier=&resort=..[&season=..] "seasonID total" per line, summed over
+ *                                                     the resorts, every season if none given
+ *   GET /unique-skiers?resort=&season=&day=           distinct skiers, one number
+ *   GET /resorts                                      one resortID per line
+ *
+ * Every answer is a lookup in the indexes the store keeps up to date, so the server threads
+ * never scan rides. A missing or non-numeric parameter is a 400.
+ */
+public class QueryServer {
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final VerticalTotals verticals;
+  private final UniqueSkierIndex uniqueSkiers;
+
+  /**
+   * @param host the address to listen on; there is no authentication, so anything but
+   *     loopback should be reachable by the servlets only
+   */
+  public QueryServer(String host, int port, int threads, VerticalTotals verticals,
+      UniqueSkierIndex uniqueSkiers, ThreadFactory threadFactory) throws IOException {
+    this.verticals = verticals;
+    this.uniqueSkiers = uniqueSkiers;
+    this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+    this.executor = Executors.newFixedThreadPool(threads, threadFactory);
+    server.setExecutor(executor);
+    server.createContext("/day-vertical", exchange -> handle(exchange, this::dayVertical));
+    server.createContext("/season-vertical", exchange -> handle(exchange, this::seasonVertical));
+    server.createContext("/unique-skiers", exchange -> handle(exchange, this::uniqueSkiers));
+    server.createContext("/resorts", exchange -> handle(exchange, query -> resorts()));
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  public InetSocketAddress getAddress() {
+    return server.getAddress();
+  }
+
+  private String dayVertical(Query query) {
+    return String.valueOf(verticals.dayVertical(query.intParam("skier"),
+        query.intParam("resort"), query.intParam("season"), query.intParam("day")));
+  }
+
+  private String seasonVertical(Query query) {
+    int skierID = query.intParam("skier");
+    List<Integer> resorts = query.intParams("resort");
+    if (resorts.isEmpty()) {
+      throw new IllegalArgumentException("Missing parameter resort");
+    }
+    List<Integer> seasons = query.intParams("season");
+    if (seasons.isEmpty()) {
+      for (int season : verticals.seasons()) {
+        seasons.add(season);
+      }
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int season : seasons) {
+      long total = 0;
+      for (int resort : resorts) {
+        total += verticals.seasonVertical(skierID, resort, season);
+      }
+      if (total > 0) {
+        sb.append(season).append(' ').append(total).append('\n');
+      }
+    }
+    return sb.toString();
+  }
+
+  private String uniqueSkiers(Query query) {
+    return String.valueOf(uniqueSkiers.uniqueSkiers(query.intParam("resort"),
+        query.intParam("season"), query.intParam("day")));
+  }
+
+  private String resorts() {
+    StringBuilder sb = new StringBuilder();
+    for (int resortID : uniqueSkiers.resortIDs()) {
+      sb.append(resortID).append('\n');
+    }
+    return sb.toString();
+  }
+
+  private interface Handler {
+
+    String answer(Query query);
+  }
+
+  private static void handle(HttpExchange exchange, Handler handler) throws IOException {
+    int status;
+    String body;
+    if (!"GET".equals(exchange.getRequestMethod())) {
+      status = 405;
+      body = "Only GET is supported";
+    } else {
+      try {
+        body = handler.answer(new Query(exchange.getRequestURI().getRawQuery()));
+        status = 200;
+      } catch (IllegalArgumentException e) {
+        status = 400;
+        body = e.getMessage();
+      } catch (RuntimeException e) {
+        System.err.println("Error answering " + exchange.getRequestURI() + ": " + e.getMessage());
+        status = 500;
+        body = "Internal error";
+      }
+    }
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /**
+   * Parameters of a query string, a name may repeat
+   */
+  private static class Query {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<String> values = new ArrayList<>();
+
+    private Query(String rawQuery) {
+      if (rawQuery == null) {
+        return;
+      }
+      for (String pair : rawQuery.split("&")) {
+        int eq = pair.indexOf('=');
+        if (eq > 0) {
+          names.add(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8));
+          values.add(URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+      }
+    }
+
+    int intParam(String name) {
+      List<Integer> all = intParams(name);
+      if (all.size() != 1) {
+        throw new IllegalArgumentException("Expected one parameter " + name);
+      }
+      return all.get(0);
+    }
+
+    List<Integer> intParams(String name) {
+      List<Integer> result = new ArrayList<>();
+      for (int i = 0; i < names.size(); i++) {
+        if (names.get(i).equals(name)) {
+          try {
+            result.add(Integer.parseInt(values.get(i)));
+          } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " must be an integer");
+          }
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import store.EventLog;
+import store.RideRecorder;
+import store.SkierRideStore;
+import store.StoreSnapshot;
+
+/**
+ * Periodically snapshots the ride store next to the event log, so a restart loads the latest
+ * snapshot and replays only the log after it.
+ *
+ * The callbacks are paused just long enough to let the recorder catch up and to read every
+ * skier's ride count and the log position; rides are only ever appended, so those counts
+ * describe the store at that position while the callbacks carry on and the snapshot is
+ * written. The snapshot is kept only if the log is durable up to its position. The two
+ * newest snapshots are kept, and log segments older than the older of them are deleted.
+ */
+public class Snapshotter {
+
+  private static final int KEEP = 2;
+
+  private final Path dir;
+  private final SkierRideStore store;
+  private final RideRecorder recorder;
+  private final EventLog log;
+  private final PauseGate gate;
+
+  public Snapshotter(Path dir, SkierRideStore store, RideRecorder recorder, EventLog log,
+      PauseGate gate) {
+    this.dir = dir;
+    this.store = store;
+    this.recorder = recorder;
+    this.log = log;
+    this.gate = gate;
+  }
+
+  /**
+   * Load the newest readable snapshot into the (empty) store and replay the log after it
+   *
+   * @return the number of rides loaded
+   */
+  public static long restore(Path dir, SkierRideStore store, EventLog log) throws IOException {
+    long start = System.nanoTime();
+    long seq = 0;
+    for (Path snapshot : StoreSnapshot.list(dir)) {
+      try {
+        seq = StoreSnapshot.load(snapshot, store);
+        System.out.println("Loaded " + store.totalRides() + " lift rides from " + snapshot);
+        break;
+      } catch (IOException e) {
+        if (store.totalRides() > 0) {
+          // failed after the checksum was verified, the store cannot be trusted
+          throw new IOException("Snapshot " + snapshot + " was loaded in part", e);
+        }
+        System.err.println("Skipping unreadable snapshot " + snapshot + ": " + e.getMessage());
+      }
+    }
+    long[] skipped = new long[1];
+    long end = log.replay(seq, event -> {
+      try {
+        store.add(event);
+      } catch (IllegalArgumentException e) {
+        // logged before the store rejected it, the message was dropped
+        skipped[0]++;
+      }
+    });
+    System.out.printf("Replayed %d lift rides (%d skipped) from the event log in %d ms%n",
+        end - seq - skipped[0], skipped[0],
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    return store.totalRides();
+  }
+
+  /**
+   * Take a snapshot now; errors are logged and the previous snapshot stays the latest
+   */
+  public void snapshot() {
+    long start = System.nanoTime();
+    int[] sizes = new int[store.maxSkierID() + 1];
+    long seq;
+    try {
+      gate.pause();
+      try {
+        recorder.awaitRecorded();
+        seq = log.nextSeq();
+        for (int skierID = 0; skierID < sizes.length; skierID++) {
+          sizes[skierID] = store.size(skierID);
+        }
+      } finally {
+        gate.resume();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    long pausedNanos = System.nanoTime() - start;
+    // the snapshot must not get ahead of the log
+    log.sync();
+    if (log.durableSeq() < seq) {
+      System.err.println("Event log not durable up to " + seq + ", snapshot skipped");
+      return;
+    }
+    try {
+      Path file = StoreSnapshot.write(dir, store, sizes, seq);
+      System.out.printf("Snapshot %s taken (callbacks paused %d us, %d ms in all)%n",
+          file.getFileName(), TimeUnit.NANOSECONDS.toMicros(pausedNanos),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      prune();
+    } catch (IOException | RuntimeException e) {
+      System.err.println("Error writing snapshot: " + e.getMessage());
+    }
+  }
+
+  private void prune() throws IOException {
+    List<Path> snapshots = StoreSnapshot.list(dir);
+    if (snapshots.size() < KEEP) {
+      return;
+    }
+    for (Path old : snapshots.subList(KEEP, snapshots.size())) {
+      Files.deleteIfExists(old);
+    }
+    log.deleteSegmentsBefore(StoreSnapshot.seqOf(snapshots.get(KEEP - 1)));
+  }
+}
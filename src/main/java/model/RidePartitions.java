@@ -0,0 +1,49 @@
+package model;
+
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import java.io.IOException;
+
+/**
+ * Layout of the skier-partitioned queues. Rides are published to a direct exchange with the
+ * routing key of their partition, skierID % partitions, and each partition has one queue
+ * bound with that key. All rides of a skier land on the same queue, so partitions can be
+ * spread over broker nodes and consumers without splitting a skier's history.
+ * NOTE: keep in sync with the servlet's copy of this class.
+ */
+public final class RidePartitions {
+
+  public static final String EXCHANGE_NAME = "lift_rides";
+  private static final String QUEUE_PREFIX = "lift_rides.p";
+
+  private RidePartitions() {
+  }
+
+  public static int partitionOf(int skierID, int partitions) {
+    return Math.floorMod(skierID, partitions);
+  }
+
+  public static String routingKey(int partition) {
+    return String.valueOf(partition);
+  }
+
+  public static String queueName(int partition) {
+    return QUEUE_PREFIX + partition;
+  }
+
+  /**
+   * Declare the exchange and the queues of the given partitions, binding each to its key.
+   * Idempotent, both the servlet and the consumers call it.
+   */
+  public static void declare(Channel channel, int partitions, Iterable<Integer> toDeclare)
+      throws IOException {
+    channel.exchangeDeclare(EXCHANGE_NAME, BuiltinExchangeType.DIRECT);
+    for (int partition : toDeclare) {
+      if (partition < 0 || partition >= partitions) {
+        throw new IllegalArgumentException("No partition " + partition + " of " + partitions);
+      }
+      channel.queueDeclare(queueName(partition), false, false, false, null);
+      channel.queueBind(queueName(partition), EXCHANGE_NAME, routingKey(partition));
+    }
+  }
+}
@@ -0,0 +1,476 @@
+package store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import model.LiftRideEvent;
+import model.LiftRideEventCodec;
+
+/**
+ * Durable append-only log of lift rides in fixed-size, memory-mapped segment files.
+ *
+ * Every ride is a LiftRideEventCodec binary record of RECORD_SIZE bytes whose reserved field
+ * holds a CRC of the rest, so the end of the log is the first slot that does not check out
+ * (segments are zero-filled when created). A ride's position is its sequence number from the
+ * start of the log; segment files are named after the sequence number of their first record.
+ *
+ * Appends only copy into the mapped segment. A flusher thread forces the written segments to
+ * disk every fsyncMillis (group commit) and then runs, in sequence order, the callbacks that
+ * were waiting for those records to be durable; the consumer acks messages from there.
+ */
+public class EventLog implements AutoCloseable {
+
+  public static final int RECORD_SIZE = LiftRideEventCodec.RECORD_SIZE;
+  private static final String SEGMENT_PREFIX = "rides-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final int CRC_OFFSET = RECORD_SIZE - 2;
+
+  private final Path dir;
+  private final long recordsPerSegment;
+  private final long fsyncNanos;
+
+  // guarded by this
+  private Segment current;
+  private long nextSeq;
+  // rolled segments not forced yet, oldest first
+  private final List<Segment> unforced = new ArrayList<>();
+  // callbacks waiting for a sequence number to be durable, in sequence order
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+  private final CRC32 crc = new CRC32();
+  private boolean closed;
+  // one flush at a time, so callbacks run in order
+  private final Object flushLock = new Object();
+
+  private volatile long durableSeq;
+  private final Thread flusher;
+
+  /**
+   * Open the log in dir (created if missing), positioned after its last valid record
+   *
+   * @param segmentBytes size of each segment file, rounded down to whole records
+   */
+  public EventLog(Path dir, long segmentBytes, long fsyncMillis) throws IOException {
+    this.dir = dir;
+    this.recordsPerSegment = segmentBytes / RECORD_SIZE;
+    if (recordsPerSegment < 1) {
+      throw new IllegalArgumentException("Segments must hold at least one record");
+    }
+    this.fsyncNanos = TimeUnit.MILLISECONDS.toNanos(fsyncMillis);
+    Files.createDirectories(dir);
+    // the log runs through full segments up to the first record that does not check out; a
+    // rolled segment's unflushed tail is zeros, so the end can be in any segment, not the last
+    List<Long> segments = segmentStarts();
+    long start = segments.isEmpty() ? 0 : segments.get(0);
+    long end = start;
+    for (long segmentStart : segments) {
+      if (segmentStart != end) {
+        break;
+      }
+      start = segmentStart;
+      end = start + countValid(segmentPath(start));
+    }
+    // segments after the end hold nothing replay may read, and would be in the way of rolls
+    for (long segmentStart : segments) {
+      if (segmentStart > start) {
+        System.err.println("Discarding event log segment after the end of the log: "
+            + segmentPath(segmentStart));
+        Files.delete(segmentPath(segmentStart));
+      }
+    }
+    current = Segment.open(segmentPath(start), start, recordsPerSegment);
+    // drop what follows a torn record, so later appends cannot run into stale ones
+    current.clearFrom(end - start);
+    nextSeq = end;
+    durableSeq = nextSeq;
+    flusher = new Thread(this::flushLoop, "event-log-flusher");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  /**
+   * Append the rides and call onDurable once they (and everything before them) are on disk.
+   * With no rides, onDurable runs once what was appended so far is on disk, which keeps it
+   * ordered with the callbacks of earlier appends.
+   *
+   * @return the sequence number after the last appended ride
+   * @throws IllegalArgumentException if a ride does not fit the record, nothing is appended
+   * @throws IOException if a new segment cannot be created, nothing is appended
+   */
+  public long append(List<LiftRideEvent> events, Runnable onDurable) throws IOException {
+    // encode outside the lock, a ride that does not fit fails the whole append
+    ByteBuffer records = ByteBuffer.allocate(events.size() * RECORD_SIZE);
+    for (LiftRideEvent event : events) {
+      LiftRideEventCodec.writeRecord(event, records);
+    }
+    byte[] bytes = records.array();
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException("Event log is closed");
+      }
+      // open every segment the rides roll into first, so a failed append writes nothing
+      Deque<Segment> next = openSegmentsUpTo(nextSeq + bytes.length / RECORD_SIZE);
+      for (int offset = 0; offset < bytes.length; offset += RECORD_SIZE) {
+        if (nextSeq == current.start + recordsPerSegment) {
+          unforced.add(current);
+          current = next.removeFirst();
+        }
+        crc.reset();
+        crc.update(bytes, offset, CRC_OFFSET);
+        records.putShort(offset + CRC_OFFSET, (short) crc.getValue());
+        current.put((int) (nextSeq - current.start), bytes, offset);
+        nextSeq++;
+      }
+      if (onDurable != null) {
+        waiters.add(new Waiter(nextSeq, onDurable));
+      }
+      return nextSeq;
+    }
+  }
+
+  /**
+   * Force what was appended so far to disk now and run its callbacks, instead of waiting for
+   * the flusher
+   */
+  public void sync() {
+    flush();
+  }
+
+  /**
+   * Sequence number after the last ride known to be on disk
+   */
+  public long durableSeq() {
+    return durableSeq;
+  }
+
+  public synchronized long nextSeq() {
+    return nextSeq;
+  }
+
+  /**
+   * Read the rides from sequence number from up to the end of the log as it was durable when
+   * the call started. Rides in segments already deleted are skipped, and the replay stops at
+   * the first record whose CRC does not check out.
+   *
+   * @return the sequence number after the last ride read
+   */
+  public long replay(long from, Consumer<LiftRideEvent> visitor) throws IOException {
+    long end = durableSeq;
+    long seq = from;
+    CRC32 crc = new CRC32();
+    byte[] record = new byte[RECORD_SIZE];
+    for (long start : segmentStarts()) {
+      long segmentEnd = start + recordsPerSegment;
+      if (segmentEnd <= seq || start >= end) {
+        continue;
+      }
+      seq = Math.max(seq, start);
+      try (FileChannel channel = FileChannel.open(segmentPath(start), StandardOpenOption.READ)) {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        long last = Math.min(start + buffer.capacity() / RECORD_SIZE, Math.min(segmentEnd, end));
+        for (; seq < last; seq++) {
+          int offset = (int) ((seq - start) * RECORD_SIZE);
+          if (!isValid(buffer, offset, crc, record)) {
+            System.err.println("Event log replay stopped at invalid record " + seq);
+            return seq;
+          }
+          buffer.position(offset);
+          visitor.accept(LiftRideEventCodec.readRecord(buffer));
+        }
+        if (seq < Math.min(segmentEnd, end)) {
+          System.err.println("Event log replay stopped at short segment " + segmentPath(start));
+          return seq;
+        }
+      }
+    }
+    return seq;
+  }
+
+  /**
+   * Delete the segment files that hold only rides before seq, e.g. once a snapshot covers them
+   *
+   * @return the number of files deleted
+   */
+  public int deleteSegmentsBefore(long seq) throws IOException {
+    long keepFrom;
+    synchronized (this) {
+      // segments still open stay, whatever seq says
+      keepFrom = unforced.isEmpty() ? current.start : unforced.get(0).start;
+    }
+    int deleted = 0;
+    for (long start : segmentStarts()) {
+      if (start + recordsPerSegment <= Math.min(seq, keepFrom)) {
+        Files.deleteIfExists(segmentPath(start));
+        deleted++;
+      }
+    }
+    return deleted;
+  }
+
+  /**
+   * The segments after the current one that records up to end need, opened. Called with the
+   * lock held; if one cannot be opened, those opened before it are deleted again.
+   */
+  private Deque<Segment> openSegmentsUpTo(long end) throws IOException {
+    Deque<Segment> opened = new ArrayDeque<>();
+    try {
+      for (long start = current.start + recordsPerSegment; start < end;
+          start += recordsPerSegment) {
+        opened.add(Segment.open(segmentPath(start), start, recordsPerSegment));
+      }
+    } catch (IOException e) {
+      for (Segment segment : opened) {
+        segment.delete();
+      }
+      throw e;
+    }
+    return opened;
+  }
+
+  /**
+   * Number of records from the start of the segment file up to the first one that is invalid
+   */
+  private static long countValid(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return countValid(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  private static long countValid(ByteBuffer buffer) {
+    CRC32 crc = new CRC32();
+    byte[] record = new byte[RECORD_SIZE];
+    int records = buffer.capacity() / RECORD_SIZE;
+    for (int i = 0; i < records; i++) {
+      if (!isValid(buffer, i * RECORD_SIZE, crc, record)) {
+        return i;
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Whether the record at offset holds a ride: its CRC checks out and it is not all zeros
+   */
+  private static boolean isValid(ByteBuffer buffer, int offset, CRC32 crc, byte[] record) {
+    for (int b = 0; b < RECORD_SIZE; b++) {
+      record[b] = buffer.get(offset + b);
+    }
+    crc.reset();
+    crc.update(record, 0, CRC_OFFSET);
+    short stored = (short) ((record[CRC_OFFSET] & 0xFF) << 8 | record[CRC_OFFSET + 1] & 0xFF);
+    return stored == (short) crc.getValue() && !isZero(record);
+  }
+
+  private static boolean isZero(byte[] record) {
+    for (byte b : record) {
+      if (b != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void flushLoop() {
+    while (true) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(fsyncNanos);
+      } catch (InterruptedException e) {
+        return;
+      }
+      boolean last;
+      synchronized (this) {
+        last = closed;
+      }
+      flush();
+      if (last) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Force everything appended so far to disk and run the callbacks it satisfies
+   */
+  private void flush() {
+    synchronized (flushLock) {
+      flushLocked();
+    }
+  }
+
+  private void flushLocked() {
+    List<Segment> toForce;
+    Segment active;
+    long seq;
+    synchronized (this) {
+      seq = nextSeq;
+      if (seq == durableSeq && waiters.isEmpty()) {
+        return;
+      }
+      toForce = new ArrayList<>(unforced);
+      unforced.clear();
+      active = current;
+    }
+    try {
+      for (Segment segment : toForce) {
+        segment.forceAndClose();
+      }
+      active.force();
+    } catch (IOException e) {
+      // nothing is reported durable, the callbacks wait for the next successful flush
+      System.err.println("Error forcing event log to disk: " + e.getMessage());
+      synchronized (this) {
+        unforced.addAll(0, toForce);
+      }
+      return;
+    }
+    durableSeq = seq;
+    while (true) {
+      Waiter waiter;
+      synchronized (this) {
+        waiter = waiters.peekFirst();
+        if (waiter == null || waiter.seq > seq) {
+          return;
+        }
+        waiters.pollFirst();
+      }
+      try {
+        waiter.onDurable.run();
+      } catch (RuntimeException e) {
+        System.err.println("Error in event log callback: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Flush what is left, run the pending callbacks and close the segment files
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    flusher.interrupt();
+    try {
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+    current.forceAndClose();
+  }
+
+  private List<Long> segmentStarts() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.map(p -> p.getFileName().toString())
+          .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+          .map(name -> Long.parseLong(
+              name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private Path segmentPath(long start) {
+    return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX));
+  }
+
+  private static class Waiter {
+
+    private final long seq;
+    private final Runnable onDurable;
+
+    private Waiter(long seq, Runnable onDurable) {
+      this.seq = seq;
+      this.onDurable = onDurable;
+    }
+  }
+
+  /**
+   * One segment file, mapped read-write for its whole size
+   */
+  private static class Segment {
+
+    private final Path path;
+    private final long start;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private Segment(Path path, long start, FileChannel channel, MappedByteBuffer buffer) {
+      this.path = path;
+      this.start = start;
+      this.channel = channel;
+      this.buffer = buffer;
+    }
+
+    static Segment open(Path path, long start, long records) throws IOException {
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+      // mapping past the end grows the file, zero-filled
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+          records * RECORD_SIZE);
+      return new Segment(path, start, channel, buffer);
+    }
+
+    void put(int index, byte[] records, int from) {
+      int offset = index * RECORD_SIZE;
+      for (int i = 0; i < RECORD_SIZE; i++) {
+        buffer.put(offset + i, records[from + i]);
+      }
+    }
+
+    void clearFrom(long index) throws IOException {
+      int end = buffer.capacity();
+      boolean dirty = false;
+      for (int offset = (int) (index * RECORD_SIZE); offset < end; offset++) {
+        if (buffer.get(offset) != 0) {
+          buffer.put(offset, (byte) 0);
+          dirty = true;
+        }
+      }
+      if (dirty) {
+        force();
+      }
+    }
+
+    void force() throws IOException {
+      try {
+        buffer.force();
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+
+    void forceAndClose() throws IOException {
+      force();
+      channel.close();
+    }
+
+    /**
+     * Close and delete a segment nothing was written to
+     */
+    void delete() {
+      try {
+        channel.close();
+        Files.deleteIfExists(path);
+      } catch (IOException e) {
+        System.err.println("Error deleting event log segment " + path + ": " + e.getMessage());
+      }
+    }
+  }
+}
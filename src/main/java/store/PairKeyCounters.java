@@ -0,0 +1,176 @@
+package store;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Long counters keyed by a pair of non-negative longs, in primitive open-addressing tables.
+ *
+ * The keys are split over a fixed number of segments by hash, each a linear-probing table of
+ * parallel long arrays that doubles when it is half full. Adding takes the segment's write
+ * lock, so writers of different segments do not contend; get() is an optimistic read that is
+ * retried under the read lock only if a writer got in meanwhile. Neither allocates.
+ */
+public class PairKeyCounters {
+
+  private static final long EMPTY = -1;
+  private static final int INITIAL_SEGMENT_CAPACITY = 256;
+
+  private final Segment[] segments;
+  private final int segmentMask;
+
+  /**
+   * @param segments number of segments, rounded up to a power of two
+   */
+  public PairKeyCounters(int segments) {
+    int n = Integer.highestOneBit(Math.max(1, segments - 1)) << 1;
+    this.segments = new Segment[n];
+    for (int i = 0; i < n; i++) {
+      this.segments[i] = new Segment();
+    }
+    this.segmentMask = n - 1;
+  }
+
+  /**
+   * Add delta to the counter of (key1, key2), creating it at zero first
+   *
+   * @throws IllegalArgumentException if a key is negative
+   */
+  public void add(long key1, long key2, long delta) {
+    if (key1 < 0 || key2 < 0) {
+      throw new IllegalArgumentException("Keys must not be negative");
+    }
+    long hash = hash(key1, key2);
+    segments[(int) (hash >>> 40) & segmentMask].add(key1, key2, (int) hash, delta);
+  }
+
+  /**
+   * The counter of (key1, key2), 0 if it was never added to
+   */
+  public long get(long key1, long key2) {
+    long hash = hash(key1, key2);
+    return segments[(int) (hash >>> 40) & segmentMask].get(key1, key2, (int) hash);
+  }
+
+  /**
+   * Number of distinct keys
+   */
+  public long size() {
+    long total = 0;
+    for (Segment segment : segments) {
+      long stamp = segment.lock.readLock();
+      try {
+        total += segment.size;
+      } finally {
+        segment.lock.unlockRead(stamp);
+      }
+    }
+    return total;
+  }
+
+  private static long hash(long key1, long key2) {
+    long h = key1 * 0x9E3779B97F4A7C15L + key2;
+    h ^= h >>> 29;
+    h *= 0xBF58476D1CE4E5B9L;
+    return h ^ (h >>> 32);
+  }
+
+  private static class Segment {
+
+    private final StampedLock lock = new StampedLock();
+    // replaced together when the table grows, read under the lock's stamps
+    private long[] keys1;
+    private long[] keys2;
+    private long[] values;
+    private int mask;
+    private int size;
+
+    private Segment() {
+      allocate(INITIAL_SEGMENT_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+      keys1 = new long[capacity];
+      Arrays.fill(keys1, EMPTY);
+      keys2 = new long[capacity];
+      values = new long[capacity];
+      mask = capacity - 1;
+    }
+
+    void add(long key1, long key2, int hash, long delta) {
+      long stamp = lock.writeLock();
+      try {
+        int i = find(keys1, keys2, mask, key1, key2, hash);
+        if (keys1[i] == EMPTY) {
+          if ((size + 1) * 2 > mask + 1) {
+            grow();
+            i = find(keys1, keys2, mask, key1, key2, hash);
+          }
+          keys1[i] = key1;
+          keys2[i] = key2;
+          size++;
+        }
+        values[i] += delta;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+
+    long get(long key1, long key2, int hash) {
+      long stamp = lock.tryOptimisticRead();
+      if (stamp != 0) {
+        long[] k1 = keys1;
+        long[] k2 = keys2;
+        long[] v = values;
+        int m = mask;
+        // a grow may have published arrays of different sizes, keep the index in bounds
+        if (k1.length == m + 1 && k2.length == m + 1 && v.length == m + 1) {
+          int i = find(k1, k2, m, key1, key2, hash);
+          long value = k1[i] == EMPTY ? 0 : v[i];
+          if (lock.validate(stamp)) {
+            return value;
+          }
+        }
+      }
+      stamp = lock.readLock();
+      try {
+        int i = find(keys1, keys2, mask, key1, key2, hash);
+        return keys1[i] == EMPTY ? 0 : values[i];
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    private void grow() {
+      long[] oldKeys1 = keys1;
+      long[] oldKeys2 = keys2;
+      long[] oldValues = values;
+      allocate(oldKeys1.length * 2);
+      for (int j = 0; j < oldKeys1.length; j++) {
+        if (oldKeys1[j] != EMPTY) {
+          int i = find(keys1, keys2, mask, oldKeys1[j], oldKeys2[j],
+              (int) hash(oldKeys1[j], oldKeys2[j]));
+          keys1[i] = oldKeys1[j];
+          keys2[i] = oldKeys2[j];
+          values[i] = oldValues[j];
+        }
+      }
+    }
+
+    /**
+     * Slot holding the key, or the empty slot where it would go. Bounded by the table size
+     * so that a read racing a writer cannot loop forever on a table it sees as full.
+     */
+    private static int find(long[] k1, long[] k2, int mask, long key1, long key2, int hash) {
+      int i = hash & mask;
+      for (int probes = 0; probes <= mask; probes++) {
+        long k = k1[i];
+        if (k == EMPTY || (k == key1 && k2[i] == key2)) {
+          return i;
+        }
+        i = (i + 1) & mask;
+      }
+      return i;
+    }
+  }
+}
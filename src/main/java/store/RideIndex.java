@@ -0,0 +1,13 @@
+package store;
+
+/**
+ * An aggregate SkierRideStore keeps up to date with every ride it stores, whether recorded,
+ * replayed from the log or loaded from a snapshot
+ */
+public interface RideIndex {
+
+  /**
+   * Account for one ride; called by whichever thread stored it, concurrently with others
+   */
+  void add(int skierID, int resortID, int seasonID, int dayID, int time, int liftID);
+}
@@ -0,0 +1,39 @@
+package store;
+
+import model.LiftRideEvent;
+
+/**
+ * Where the consumer hands every decoded lift ride
+ */
+public interface RideRecorder {
+
+  /**
+   * Record the ride; may block when the recorder applies back-pressure
+   */
+  void record(LiftRideEvent event) throws InterruptedException;
+
+  /**
+   * Check the ride without recording it, so a message can be rejected before any of it is
+   * logged
+   *
+   * @throws IllegalArgumentException if the store would reject the ride
+   */
+  void validate(LiftRideEvent event);
+
+  /**
+   * Rides recorded so far
+   */
+  long recordedCount();
+
+  /**
+   * Wait until every ride handed over so far is in the store
+   */
+  default void awaitRecorded() throws InterruptedException {
+  }
+
+  /**
+   * Finish recording what was handed over and release the recorder's threads
+   */
+  default void close() throws InterruptedException {
+  }
+}
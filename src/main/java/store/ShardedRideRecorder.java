@@ -0,0 +1,157 @@
+package store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import model.LiftRideEvent;
+
+/**
+ * Routes rides by skierID to N single-threaded shards. Each shard has a bounded queue that
+ * the consumer callbacks put into (blocking when it is full, which stops the channel and in
+ * turn the broker once the prefetch is used up) and one thread that drains it into the store.
+ *
+ * Every skier belongs to exactly one shard, so the store is written by a single thread per
+ * skier (its per-skier locks are never contended), a skier's rides are stored in the order
+ * they were handed over, and the only state shared between callback threads is the queue of
+ * the shard they hand to. Counts are kept per shard by the shard thread and summed on read.
+ */
+public class ShardedRideRecorder implements RideRecorder {
+
+  private static final int DRAIN_BATCH = 256;
+  private static final long POLL_MILLIS = 100;
+  private static final long AWAIT_POLL_MILLIS = 1;
+
+  private final SkierRideStore store;
+  private final Shard[] shards;
+  private volatile boolean closed;
+
+  public ShardedRideRecorder(SkierRideStore store, int numShards, int queueCapacity) {
+    this.store = store;
+    this.shards = new Shard[numShards];
+    for (int i = 0; i < numShards; i++) {
+      shards[i] = new Shard(queueCapacity);
+      Thread thread = new Thread(shards[i], "ride-shard-" + i);
+      thread.setDaemon(true);
+      shards[i].thread = thread;
+      thread.start();
+    }
+  }
+
+  @Override
+  public void record(LiftRideEvent event) throws InterruptedException {
+    if (closed) {
+      throw new IllegalStateException("Recorder is closed");
+    }
+    // reject it now, while the caller can still nack the message
+    store.validate(event);
+    Shard shard = shards[event.getSkierID() % shards.length];
+    shard.queue.put(event);
+    shard.handed.incrementAndGet();
+  }
+
+  @Override
+  public void validate(LiftRideEvent event) {
+    store.validate(event);
+  }
+
+  /**
+   * Wait until the shard threads have taken in every ride handed over before the call
+   */
+  @Override
+  public void awaitRecorded() throws InterruptedException {
+    for (Shard shard : shards) {
+      long handed = shard.handed.get();
+      while (shard.recorded + shard.dropped < handed) {
+        TimeUnit.MILLISECONDS.sleep(AWAIT_POLL_MILLIS);
+      }
+    }
+  }
+
+  @Override
+  public long recordedCount() {
+    long total = 0;
+    for (Shard shard : shards) {
+      total += shard.recorded;
+    }
+    return total;
+  }
+
+  /**
+   * Rides waiting in the shard queues
+   */
+  public int backlog() {
+    int total = 0;
+    for (Shard shard : shards) {
+      total += shard.queue.size();
+    }
+    return total;
+  }
+
+  /**
+   * Stop accepting rides, let every shard drain its queue and stop
+   */
+  @Override
+  public void close() throws InterruptedException {
+    closed = true;
+    for (Shard shard : shards) {
+      shard.thread.join();
+    }
+  }
+
+  public SkierRideStore getStore() {
+    return store;
+  }
+
+  private class Shard implements Runnable {
+
+    private final BlockingQueue<LiftRideEvent> queue;
+    private final List<LiftRideEvent> batch = new ArrayList<>(DRAIN_BATCH);
+    private Thread thread;
+    // rides put in the queue, counted after the put
+    private final AtomicLong handed = new AtomicLong(0);
+    // written by the shard thread only
+    private volatile long recorded;
+    private volatile long dropped;
+
+    private Shard(int queueCapacity) {
+      this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        LiftRideEvent first;
+        try {
+          first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          return;
+        }
+        if (first == null) {
+          if (closed && queue.isEmpty()) {
+            return;
+          }
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, DRAIN_BATCH - 1);
+        int stored = 0;
+        for (LiftRideEvent event : batch) {
+          try {
+            store.add(event);
+            stored++;
+          } catch (RuntimeException e) {
+            // acked already, nothing to redeliver; keep the shard alive
+            dropped++;
+            System.err.println(Thread.currentThread().getName() + " dropped a ride ("
+                + dropped + " so far): " + e.getMessage());
+          }
+        }
+        recorded += stored;
+        batch.clear();
+      }
+    }
+  }
+}
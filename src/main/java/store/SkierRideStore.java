@@ -0,0 +1,247 @@
+package store;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import model.LiftRide;
+import model.LiftRideEvent;
+
+/**
+ * In-memory store of every lift ride, indexed by skierID.
+ *
+ * Each skier's rides are kept column by column in primitive int arrays (resortID, seasonID,
+ * dayID, time, liftID), appended to in amortized O(1) by doubling the arrays when full, so a
+ * ride costs 20 bytes of heap instead of a LiftRideEvent with its boxed and String fields.
+ * Skiers are created on their first ride; writes and reads of one skier synchronize on that
+ * skier only, so workers recording different skiers never contend.
+ * Registered RideIndexes are updated with every ride added, after the skier's lock is released.
+ */
+public class SkierRideStore implements RideRecorder {
+
+  // skierIDs start at 1, so an all-zero record can never pass for a ride
+  public static final int MIN_SKIER_ID = 1;
+  private static final int INITIAL_CAPACITY = 4;
+
+  private final AtomicReferenceArray<SkierRides> skiers;
+  private final LongAdder totalRides = new LongAdder();
+  private final List<RideIndex> indexes = new CopyOnWriteArrayList<>();
+
+  /**
+   * Callback for reading rides, called once per ride in the order they were added
+   */
+  public interface RideVisitor {
+
+    void visit(int resortID, int seasonID, int dayID, int time, int liftID);
+  }
+
+  /**
+   * @param maxSkierID the highest skierID that can be stored
+   */
+  public SkierRideStore(int maxSkierID) {
+    this.skiers = new AtomicReferenceArray<>(maxSkierID + 1);
+  }
+
+  /**
+   * Keep the index up to date with the rides added from now on
+   */
+  public void addIndex(RideIndex index) {
+    indexes.add(index);
+  }
+
+  @Override
+  public void record(LiftRideEvent event) {
+    add(event);
+  }
+
+  @Override
+  public long recordedCount() {
+    return totalRides();
+  }
+
+  /**
+   * A missing field is rejected here too: as a NullPointerException later on it would be
+   * taken for a transient failure and the message requeued forever.
+   *
+   * @throws IllegalArgumentException if add would reject the ride
+   */
+  @Override
+  public void validate(LiftRideEvent event) {
+    if (event == null) {
+      throw new IllegalArgumentException("Missing lift ride");
+    }
+    LiftRide body = event.getBody();
+    if (event.getSkierID() == null || event.getResortID() == null || body == null
+        || body.getTime() == null || body.getLiftID() == null) {
+      throw new IllegalArgumentException("Missing skierID, resortID, time or liftID");
+    }
+    checkSkierID(event.getSkierID());
+    // parseInt rejects a null ID as well
+    Integer.parseInt(event.getSeasonID());
+    Integer.parseInt(event.getDayID());
+  }
+
+  public void add(LiftRideEvent event) {
+    add(event.getSkierID(), event.getResortID(), Integer.parseInt(event.getSeasonID()),
+        Integer.parseInt(event.getDayID()), event.getBody().getTime(),
+        event.getBody().getLiftID());
+  }
+
+  /**
+   * @throws IllegalArgumentException if skierID is outside MIN_SKIER_ID..maxSkierID
+   */
+  public void add(int skierID, int resortID, int seasonID, int dayID, int time, int liftID) {
+    SkierRides rides = getOrCreate(skierID);
+    synchronized (rides) {
+      rides.append(resortID, seasonID, dayID, time, liftID);
+    }
+    totalRides.increment();
+    for (RideIndex index : indexes) {
+      index.add(skierID, resortID, seasonID, dayID, time, liftID);
+    }
+  }
+
+  /**
+   * Append count rides of one skier at once, e.g. when loading a snapshot
+   *
+   * @throws IllegalArgumentException if skierID is outside MIN_SKIER_ID..maxSkierID
+   */
+  public void addAll(int skierID, int[] resortID, int[] seasonID, int[] dayID, int[] time,
+      int[] liftID, int count) {
+    if (count == 0) {
+      return;
+    }
+    SkierRides rides = getOrCreate(skierID);
+    synchronized (rides) {
+      rides.appendAll(resortID, seasonID, dayID, time, liftID, count);
+    }
+    totalRides.add(count);
+    for (RideIndex index : indexes) {
+      for (int i = 0; i < count; i++) {
+        index.add(skierID, resortID[i], seasonID[i], dayID[i], time[i], liftID[i]);
+      }
+    }
+  }
+
+  /**
+   * Copy of the skier's first count rides as {resortID, seasonID, dayID, time, liftID}.
+   * Rides are only ever appended, so a prefix never changes once it is stored.
+   */
+  public int[][] copyRides(int skierID, int count) {
+    SkierRides rides = get(skierID);
+    if (rides == null) {
+      return new int[5][0];
+    }
+    synchronized (rides) {
+      int n = Math.min(count, rides.size);
+      return new int[][]{Arrays.copyOf(rides.resortID, n), Arrays.copyOf(rides.seasonID, n),
+          Arrays.copyOf(rides.dayID, n), Arrays.copyOf(rides.time, n),
+          Arrays.copyOf(rides.liftID, n)};
+    }
+  }
+
+  /**
+   * Number of rides recorded for the skier
+   */
+  public int size(int skierID) {
+    SkierRides rides = get(skierID);
+    if (rides == null) {
+      return 0;
+    }
+    synchronized (rides) {
+      return rides.size;
+    }
+  }
+
+  /**
+   * Visit every ride of the skier, holding the skier's lock meanwhile
+   */
+  public void forEachRide(int skierID, RideVisitor visitor) {
+    SkierRides rides = get(skierID);
+    if (rides == null) {
+      return;
+    }
+    synchronized (rides) {
+      for (int i = 0; i < rides.size; i++) {
+        visitor.visit(rides.resortID[i], rides.seasonID[i], rides.dayID[i], rides.time[i],
+            rides.liftID[i]);
+      }
+    }
+  }
+
+  public long totalRides() {
+    return totalRides.sum();
+  }
+
+  public int maxSkierID() {
+    return skiers.length() - 1;
+  }
+
+  private SkierRides get(int skierID) {
+    return skierID >= 0 && skierID < skiers.length() ? skiers.get(skierID) : null;
+  }
+
+  private SkierRides getOrCreate(int skierID) {
+    checkSkierID(skierID);
+    SkierRides rides = skiers.get(skierID);
+    if (rides == null) {
+      // racing creators agree on whichever instance got in first
+      skiers.compareAndSet(skierID, null, new SkierRides());
+      rides = skiers.get(skierID);
+    }
+    return rides;
+  }
+
+  private void checkSkierID(int skierID) {
+    if (skierID < MIN_SKIER_ID || skierID >= skiers.length()) {
+      throw new IllegalArgumentException("skierID out of range: " + skierID);
+    }
+  }
+
+  /**
+   * The ride columns of one skier, guarded by its own monitor
+   */
+  private static class SkierRides {
+
+    private int size;
+    private int[] resortID = new int[INITIAL_CAPACITY];
+    private int[] seasonID = new int[INITIAL_CAPACITY];
+    private int[] dayID = new int[INITIAL_CAPACITY];
+    private int[] time = new int[INITIAL_CAPACITY];
+    private int[] liftID = new int[INITIAL_CAPACITY];
+
+    private void append(int resort, int season, int day, int rideTime, int lift) {
+      if (size == time.length) {
+        grow(size * 2);
+      }
+      resortID[size] = resort;
+      seasonID[size] = season;
+      dayID[size] = day;
+      time[size] = rideTime;
+      liftID[size] = lift;
+      size++;
+    }
+
+    private void appendAll(int[] resorts, int[] seasons, int[] days, int[] rideTimes,
+        int[] lifts, int count) {
+      if (size + count > time.length) {
+        grow(Math.max(size * 2, size + count));
+      }
+      System.arraycopy(resorts, 0, resortID, size, count);
+      System.arraycopy(seasons, 0, seasonID, size, count);
+      System.arraycopy(days, 0, dayID, size, count);
+      System.arraycopy(rideTimes, 0, time, size, count);
+      System.arraycopy(lifts, 0, liftID, size, count);
+      size += count;
+    }
+
+    private void grow(int capacity) {
+      resortID = Arrays.copyOf(resortID, capacity);
+      seasonID = Arrays.copyOf(seasonID, capacity);
+      dayID = Arrays.copyOf(dayID, capacity);
+      time = Arrays.copyOf(time, capacity);
+      liftID = Arrays.copyOf(liftID, capacity);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of a SkierRideStore, taken at a position of the EventLog, so a restart
+ * loads the snapshot and replays only the rides logged after it.
+ *
+ * The file holds a header (magic, version, log position, maxSkierID, number of skiers), then
+ * per skier with rides its skierID, ride count and the five ride columns as u16 (10 bytes a
+ * ride), and ends with the total ride count and a CRC32 of everything before it. Files are
+ * named after the log position, written to a temporary file, forced and renamed into place,
+ * so a crash mid-write leaves the previous snapshot as the latest one.
+ */
+public class StoreSnapshot {
+
+  private static final int MAGIC = 0x534b5253; // "SKRS"
+  private static final int VERSION = 1;
+  private static final int COLUMNS = 5;
+  private static final String PREFIX = "snapshot-";
+  private static final String SUFFIX = ".bin";
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private StoreSnapshot() {
+  }
+
+  /**
+   * Write the first sizes[skierID] rides of every skier as the snapshot at log position seq
+   *
+   * @param sizes ride counts per skier taken while nothing was being recorded
+   * @return the snapshot file
+   */
+  public static Path write(Path dir, SkierRideStore store, int[] sizes, long seq)
+      throws IOException {
+    Path target = dir.resolve(fileName(seq));
+    Path tmp = dir.resolve(fileName(seq) + ".tmp");
+    int skiers = 0;
+    for (int size : sizes) {
+      if (size > 0) {
+        skiers++;
+      }
+    }
+    CRC32 crc = new CRC32();
+    long total = 0;
+    try (OutputStream file = Files.newOutputStream(tmp);
+        DataOutputStream out = new DataOutputStream(
+            new CheckedOutputStream(new BufferedOutputStream(file, BUFFER_SIZE), crc))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(seq);
+      out.writeInt(store.maxSkierID());
+      out.writeInt(skiers);
+      for (int skierID = 0; skierID < sizes.length; skierID++) {
+        if (sizes[skierID] == 0) {
+          continue;
+        }
+        int[][] columns = store.copyRides(skierID, sizes[skierID]);
+        int count = columns[0].length;
+        out.writeInt(skierID);
+        out.writeInt(count);
+        for (int[] column : columns) {
+          for (int i = 0; i < count; i++) {
+            out.writeShort(column[i]);
+          }
+        }
+        total += count;
+      }
+      out.writeLong(total);
+      out.flush();
+      // the CRC itself is not part of the checksum
+      new DataOutputStream(file).writeLong(crc.getValue());
+    }
+    try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+    return target;
+  }
+
+  /**
+   * Load a snapshot into an empty store. The checksum is verified before anything is added.
+   *
+   * @return the log position the snapshot was taken at
+   * @throws IOException if the file is truncated, corrupt or for another store size
+   */
+  public static long load(Path file, SkierRideStore store) throws IOException {
+    verify(file);
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not a ride snapshot: " + file);
+      }
+      long seq = in.readLong();
+      if (in.readInt() != store.maxSkierID()) {
+        throw new IOException("Snapshot is for another maxSkierID: " + file);
+      }
+      int skiers = in.readInt();
+      int[][] columns = new int[COLUMNS][0];
+      for (int s = 0; s < skiers; s++) {
+        int skierID = in.readInt();
+        int count = in.readInt();
+        if (columns[0].length < count) {
+          for (int c = 0; c < COLUMNS; c++) {
+            columns[c] = new int[count];
+          }
+        }
+        for (int[] column : columns) {
+          for (int i = 0; i < count; i++) {
+            column[i] = in.readUnsignedShort();
+          }
+        }
+        store.addAll(skierID, columns[0], columns[1], columns[2], columns[3], columns[4], count);
+      }
+      return seq;
+    }
+  }
+
+  /**
+   * Check the trailing CRC against the rest of the file
+   */
+  private static void verify(Path file) throws IOException {
+    long length = Files.size(file);
+    if (length < Long.BYTES) {
+      throw new IOException("Snapshot is truncated: " + file);
+    }
+    CRC32 crc = new CRC32();
+    try (InputStream in = Files.newInputStream(file)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long remaining = length - Long.BYTES;
+      while (remaining > 0) {
+        int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (n < 0) {
+          throw new IOException("Snapshot is truncated: " + file);
+        }
+        crc.update(buffer, 0, n);
+        remaining -= n;
+      }
+      if (new DataInputStream(in).readLong() != crc.getValue()) {
+        throw new IOException("Snapshot checksum mismatch: " + file);
+      }
+    }
+  }
+
+  /**
+   * Snapshot files in dir, newest (highest log position) first
+   */
+  public static List<Path> list(Path dir) throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.filter(p -> {
+        String name = p.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+      }).sorted((a, b) -> Long.compare(seqOf(b), seqOf(a))).collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Log position a snapshot file was taken at
+   */
+  public static long seqOf(Path file) {
+    String name = file.getFileName().toString();
+    return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+  }
+
+  private static String fileName(long seq) {
+    return String.format("%s%020d%s", PREFIX, seq, SUFFIX);
+  }
+}
@@ -0,0 +1,195 @@
+package store;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * Which skiers rode at each resort on each day of a season: one bitmap of maxSkierID + 1 bits
+ * (12.5 KB for 100000 skiers) per (resortID, seasonID, dayID).
+ *
+ * Marking a skier is a CAS on one 64-bit word, and does nothing once the bit is set, so the
+ * consumer threads update the bitmaps without locks. Counting unique skiers is a popcount
+ * over the words of one bitmap instead of a scan over every skier's rides.
+ *
+ * Bitmaps are found through an open-addressing table keyed by the packed day key. Lookups
+ * read the current table without locking; adding a day (once per resort and day) takes the
+ * index lock, and a full table is replaced by one twice its size holding the same bitmaps.
+ */
+public class UniqueSkierIndex implements RideIndex {
+
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final long EMPTY = -1;
+
+  private final int maxSkierID;
+  private final int words;
+  private volatile Table table = new Table(INITIAL_CAPACITY);
+  // guarded by this
+  private int days;
+
+  public UniqueSkierIndex(int maxSkierID) {
+    this.maxSkierID = maxSkierID;
+    this.words = (maxSkierID >> 6) + 1;
+  }
+
+  @Override
+  public void add(int skierID, int resortID, int seasonID, int dayID, int time, int liftID) {
+    mark(resortID, seasonID, dayID, skierID);
+  }
+
+  /**
+   * Record that the skier rode on that day
+   *
+   * @return true if it is the skier's first ride that day
+   * @throws IllegalArgumentException if skierID is outside 0..maxSkierID
+   */
+  public boolean mark(int resortID, int seasonID, int dayID, int skierID) {
+    if (skierID < 0 || skierID > maxSkierID) {
+      throw new IllegalArgumentException("skierID out of range: " + skierID);
+    }
+    AtomicLongArray bits = bitmap(key(resortID, seasonID, dayID), true);
+    int word = skierID >>> 6;
+    long bit = 1L << skierID;
+    long current;
+    do {
+      current = bits.get(word);
+      if ((current & bit) != 0) {
+        return false;
+      }
+    } while (!bits.compareAndSet(word, current, current | bit));
+    return true;
+  }
+
+  /**
+   * Number of distinct skiers that rode at the resort on that day
+   */
+  public int uniqueSkiers(int resortID, int seasonID, int dayID) {
+    AtomicLongArray bits = bitmap(key(resortID, seasonID, dayID), false);
+    if (bits == null) {
+      return 0;
+    }
+    int count = 0;
+    for (int i = 0; i < words; i++) {
+      count += Long.bitCount(bits.get(i));
+    }
+    return count;
+  }
+
+  /**
+   * Whether the skier rode at the resort on that day
+   */
+  public boolean contains(int resortID, int seasonID, int dayID, int skierID) {
+    if (skierID < 0 || skierID > maxSkierID) {
+      return false;
+    }
+    AtomicLongArray bits = bitmap(key(resortID, seasonID, dayID), false);
+    return bits != null && (bits.get(skierID >>> 6) & (1L << skierID)) != 0;
+  }
+
+  /**
+   * resortIDs with at least one ride, in ascending order
+   */
+  public int[] resortIDs() {
+    Table current = table;
+    return IntStream.range(0, current.capacity())
+        .mapToLong(current.keys::get)
+        .filter(key -> key != EMPTY)
+        .mapToInt(key -> (int) (key >>> 32))
+        .distinct()
+        .sorted()
+        .toArray();
+  }
+
+  /**
+   * Number of (resort, season, day) bitmaps
+   */
+  public synchronized int dayCount() {
+    return days;
+  }
+
+  private static long key(int resortID, int seasonID, int dayID) {
+    // each ID is a u16 in the binary format
+    return ((long) (resortID & 0xFFFF) << 32) | ((long) (seasonID & 0xFFFF) << 16)
+        | (dayID & 0xFFFF);
+  }
+
+  private AtomicLongArray bitmap(long key, boolean create) {
+    AtomicLongArray bits = table.get(key);
+    if (bits != null || !create) {
+      return bits;
+    }
+    synchronized (this) {
+      bits = table.get(key);
+      if (bits == null) {
+        bits = new AtomicLongArray(words);
+        if ((days + 1) * 2 > table.capacity()) {
+          table = table.grow();
+        }
+        table.put(key, bits);
+        days++;
+      }
+      return bits;
+    }
+  }
+
+  /**
+   * Linear-probing table, written under the index lock and read without it. A slot's bitmap
+   * is set before its key, so a reader that finds the key finds the bitmap.
+   */
+  private static class Table {
+
+    private final AtomicLongArray keys;
+    private final AtomicReferenceArray<AtomicLongArray> values;
+    private final int mask;
+
+    private Table(int capacity) {
+      this.keys = new AtomicLongArray(capacity);
+      for (int i = 0; i < capacity; i++) {
+        keys.set(i, EMPTY);
+      }
+      this.values = new AtomicReferenceArray<>(capacity);
+      this.mask = capacity - 1;
+    }
+
+    int capacity() {
+      return mask + 1;
+    }
+
+    AtomicLongArray get(long key) {
+      for (int i = slot(key); ; i = (i + 1) & mask) {
+        long k = keys.get(i);
+        if (k == key) {
+          return values.get(i);
+        }
+        if (k == EMPTY) {
+          return null;
+        }
+      }
+    }
+
+    void put(long key, AtomicLongArray bits) {
+      int i = slot(key);
+      while (keys.get(i) != EMPTY) {
+        i = (i + 1) & mask;
+      }
+      values.set(i, bits);
+      keys.set(i, key);
+    }
+
+    Table grow() {
+      Table bigger = new Table(capacity() * 2);
+      for (int i = 0; i <= mask; i++) {
+        long k = keys.get(i);
+        if (k != EMPTY) {
+          bigger.put(k, values.get(i));
+        }
+      }
+      return bigger;
+    }
+
+    private int slot(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h >>> 32) & mask;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package store;
+
+import java.util.Arrays;
+
+/**
+ * Total vertical per skier and day, and per skier and season, at each resort, added to as
+ * rides are stored so that the skier vertical queries are lookups instead of scans.
+ *
+ * A ride's vertical comes from a per-lift table, by default the liftID x 10 convention; a
+ * lift missing from the table counts as no vertical, as the ride is already stored.
+ * Day totals are keyed by (skierID, resortID) and (seasonID, dayID), season totals by
+ * (skierID, resortID) and seasonID, each in a PairKeyCounters.
+ */
+public class VerticalTotals implements RideIndex {
+
+  private static final int SEGMENTS = 64;
+  private static final int METRES_PER_LIFT_ID = 10;
+
+  // vertical of a ride on each liftID, index 0 unused
+  private final int[] liftVertical;
+  private final PairKeyCounters dayTotals = new PairKeyCounters(SEGMENTS);
+  private final PairKeyCounters seasonTotals = new PairKeyCounters(SEGMENTS);
+  // seasons seen so far, replaced under the lock when one is added
+  private volatile int[] seasons = new int[0];
+
+  /**
+   * @param liftVertical vertical of one ride per liftID (index 0 unused)
+   */
+  public VerticalTotals(int[] liftVertical) {
+    this.liftVertical = liftVertical.clone();
+  }
+
+  /**
+   * liftID x 10 for lifts 1..maxLiftID
+   */
+  public static VerticalTotals liftIdTimesTen(int maxLiftID) {
+    int[] vertical = new int[maxLiftID + 1];
+    for (int lift = 1; lift <= maxLiftID; lift++) {
+      vertical[lift] = lift * METRES_PER_LIFT_ID;
+    }
+    return new VerticalTotals(vertical);
+  }
+
+  /**
+   * Per-lift verticals from a list like "200,300,450", the first for liftID 1
+   */
+  public static VerticalTotals fromList(String spec) {
+    String[] parts = spec.split(",");
+    int[] vertical = new int[parts.length + 1];
+    for (int i = 0; i < parts.length; i++) {
+      vertical[i + 1] = Integer.parseInt(parts[i].trim());
+      if (vertical[i + 1] < 0) {
+        throw new IllegalArgumentException("Lift vertical must not be negative: " + parts[i]);
+      }
+    }
+    return new VerticalTotals(vertical);
+  }
+
+  @Override
+  public void add(int skierID, int resortID, int seasonID, int dayID, int time, int liftID) {
+    int vertical = liftID > 0 && liftID < liftVertical.length ? liftVertical[liftID] : 0;
+    long skierResort = skierResort(skierID, resortID);
+    dayTotals.add(skierResort, seasonDay(seasonID, dayID), vertical);
+    seasonTotals.add(skierResort, seasonID, vertical);
+    if (!hasSeason(seasonID)) {
+      addSeason(seasonID);
+    }
+  }
+
+  /**
+   * Seasons any ride was stored for
+   */
+  public int[] seasons() {
+    return seasons.clone();
+  }
+
+  private boolean hasSeason(int seasonID) {
+    for (int season : seasons) {
+      if (season == seasonID) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private synchronized void addSeason(int seasonID) {
+    if (!hasSeason(seasonID)) {
+      int[] more = Arrays.copyOf(seasons, seasons.length + 1);
+      more[seasons.length] = seasonID;
+      Arrays.sort(more);
+      seasons = more;
+    }
+  }
+
+  /**
+   * Vertical the skier rode at the resort on that day
+   */
+  public long dayVertical(int skierID, int resortID, int seasonID, int dayID) {
+    return dayTotals.get(skierResort(skierID, resortID), seasonDay(seasonID, dayID));
+  }
+
+  /**
+   * Vertical the skier rode at the resort in that season
+   */
+  public long seasonVertical(int skierID, int resortID, int seasonID) {
+    return seasonTotals.get(skierResort(skierID, resortID), seasonID);
+  }
+
+  public int maxLiftID() {
+    return liftVertical.length - 1;
+  }
+
+  private static long skierResort(int skierID, int resortID) {
+    return ((long) skierID << 16) | (resortID & 0xFFFF);
+  }
+
+  private static long seasonDay(int seasonID, int dayID) {
+    return ((long) (seasonID & 0xFFFF) << 16) | (dayID & 0xFFFF);
+  }
+
+  @Override
+  public String toString() {
+    return "liftVertical=" + Arrays.toString(Arrays.copyOfRange(liftVertical, 1,
+        liftVertical.length));
+  }
+}